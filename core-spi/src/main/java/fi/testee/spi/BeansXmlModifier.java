@@ -19,5 +19,13 @@ import org.jboss.weld.bootstrap.spi.BeansXml;
 
 import java.util.function.Function;
 
+/**
+ * Modifies the <code>beans.xml</code> of the deployed bean archives.
+ * <p>
+ * The modified <code>beans.xml</code> files are cached across test instances, so implementations must be
+ * stateless and only depend on the <code>beans.xml</code> passed in.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
 public interface BeansXmlModifier extends Function<BeansXml, BeansXml> {
 }
@@ -25,4 +25,17 @@ import java.util.function.Function;
  */
 public interface DataSourceMigrator {
     void migrate(Class<?> testSetupClass, Function<String, DataSource> dataSourceProvider);
+
+    /**
+     * Checks if the migrator has anything to migrate for a test setup class, e.g. because the class is annotated
+     * accordingly. If no migrator is applicable and there is no test data to set up, the test setup skips
+     * bootstrapping the persistence context it needs for migrations.
+     *
+     * @param testSetupClass the test setup class.
+     * @return <code>false</code> if {@link #migrate(Class, Function)} would not do anything, <code>true</code>
+     * otherwise.
+     */
+    default boolean isApplicable(Class<?> testSetupClass) {
+        return true;
+    }
 }
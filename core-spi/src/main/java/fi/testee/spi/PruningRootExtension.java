@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.spi;
+
+import java.lang.annotation.Annotation;
+import java.util.Collection;
+
+/**
+ * Extends deployment pruning by contributing annotations of classes that are instantiated by a plugin on demand
+ * (like JAX-RS resources), so they are deployed along with the beans reachable from them although nothing
+ * injects them.
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+public interface PruningRootExtension {
+    /**
+     * Returns the annotations marking classes as roots of the reachability analysis. A class is a root if the
+     * class or one of its members is annotated with one of the annotations or with an annotation annotated with
+     * one of them.
+     *
+     * @return the annotations.
+     */
+    Collection<Class<? extends Annotation>> getRootAnnotations();
+}
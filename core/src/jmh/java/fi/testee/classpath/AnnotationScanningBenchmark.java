@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import org.apache.commons.io.IOUtils;
+import org.jboss.weld.bootstrap.WeldBootstrap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scannotation.AnnotationDB;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Compares the {@link ClassFileAnnotationReader} against scannotation's {@link AnnotationDB}, using the
+ * classes of Weld's core implementation JAR held in memory.
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AnnotationScanningBenchmark {
+    private final List<byte[]> classFiles = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IOException, URISyntaxException {
+        final File jar = new File(WeldBootstrap.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        try (final ZipFile zip = new ZipFile(jar)) {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(".class")) {
+                    try (final InputStream in = zip.getInputStream(entry)) {
+                        classFiles.add(IOUtils.toByteArray(in));
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Set<String>> scannotation() throws IOException {
+        final AnnotationDB db = new AnnotationDB();
+        for (final byte[] classFile : classFiles) {
+            db.scanClass(new ByteArrayInputStream(classFile));
+        }
+        return db.getAnnotationIndex();
+    }
+
+    @Benchmark
+    public Map<String, Set<String>> constantPoolReader() {
+        final Map<String, Set<String>> index = new HashMap<>();
+        final List<String> annotations = new ArrayList<>();
+        for (final byte[] classFile : classFiles) {
+            annotations.clear();
+            final String className = ClassFileAnnotationReader.read(ByteBuffer.wrap(classFile), annotations);
+            annotations.forEach(it -> index.computeIfAbsent(it, k -> new HashSet<>()).add(className));
+        }
+        return index;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.runtime;
+
+import fi.testee.services.ExecutorServicesImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures bootstrapping the Weld containers of a {@link TestSetup} and of a test instance, with Weld
+ * running single threaded and with the default thread pool size. Every parameter combination runs in its
+ * own JVM, so the {@link TestRuntime} picks up the configured number of threads.
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class BootstrapBenchmark {
+    // 0 stands for the default, i.e. one thread per available processor
+    @Param({"1", "0"})
+    public int threads;
+
+    private TestSetup testSetup;
+    private Method method;
+
+    @Setup(Level.Trial)
+    public void setup() throws NoSuchMethodException {
+        if (threads > 0) {
+            System.setProperty(ExecutorServicesImpl.THREADS, String.valueOf(threads));
+        }
+        testSetup = new TestSetup(TestClass.class, TestRuntime.instance()).init();
+        method = TestClass.class.getMethod("test");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        testSetup.shutdown();
+    }
+
+    @Benchmark
+    public TestSetup initTestSetup() {
+        final TestSetup ret = new TestSetup(TestClass.class, TestRuntime.instance()).init();
+        ret.shutdown();
+        return ret;
+    }
+
+    @Benchmark
+    public TestSetup.TestInstance prepareTestInstance() {
+        final TestSetup.TestInstance ret = testSetup.prepareTestInstance("benchmark", new TestClass(), method);
+        ret.shutdown();
+        return ret;
+    }
+
+    public static class TestClass {
+        @EJB
+        private Service service;
+
+        public void test() {
+            service.call();
+        }
+    }
+
+    @Stateless
+    public static class Service {
+        public void call() {
+        }
+    }
+}
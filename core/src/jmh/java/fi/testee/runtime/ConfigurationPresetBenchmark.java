@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.runtime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures preparing a test instance with the default configuration and with the "fast tests" preset
+ * documented in the README. Every preset runs in its own JVM, so the {@link TestRuntime} picks up the
+ * configuration.
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ConfigurationPresetBenchmark {
+    private static final Map<String, String> FAST_TESTS = new LinkedHashMap<>();
+
+    static {
+        FAST_TESTS.put("testeefi.weld.validation", "once");
+        FAST_TESTS.put("testeefi.deployment.pruning", "true");
+        FAST_TESTS.put("testeefi.weld.sharedFrameworkContainer", "true");
+        FAST_TESTS.put("org.jboss.weld.bootstrap.preloaderThreadPoolSize", "0");
+        FAST_TESTS.put("org.jboss.weld.construction.relaxed", "true");
+    }
+
+    @Param({"default", "fastTests"})
+    public String preset;
+
+    private TestSetup testSetup;
+    private Method method;
+
+    @Setup(Level.Trial)
+    public void setup() throws NoSuchMethodException {
+        if ("fastTests".equals(preset)) {
+            FAST_TESTS.forEach(System::setProperty);
+        }
+        testSetup = new TestSetup(TestClass.class, TestRuntime.instance()).init();
+        method = TestClass.class.getMethod("test");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        testSetup.shutdown();
+    }
+
+    @Benchmark
+    public TestSetup.TestInstance prepareTestInstance() {
+        final TestSetup.TestInstance ret = testSetup.prepareTestInstance("benchmark", new TestClass(), method);
+        ret.shutdown();
+        return ret;
+    }
+
+    public static class TestClass {
+        @EJB
+        private Service service;
+
+        public void test() {
+            service.call();
+        }
+    }
+
+    @Stateless
+    public static class Service {
+        @Inject
+        private Repository repository;
+
+        public void call() {
+            repository.find();
+        }
+    }
+
+    public static class Repository {
+        public void find() {
+        }
+    }
+
+    // Not reachable from the test class, so pruned from the deployment
+    @Stateless
+    public static class UnusedService {
+        @Inject
+        private Repository repository;
+    }
+}
@@ -15,13 +15,22 @@
  */
 package fi.testee.classpath;
 
-import org.apache.commons.lang3.StringUtils;
+import fi.testee.exceptions.TestEEfiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
-import java.net.URL;
+import java.lang.ref.SoftReference;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /**
  * Base class for real java archives.
@@ -29,15 +38,33 @@ import java.util.HashSet;
  * @author Alex Stockinger, IT-Stockinger
  */
 abstract class AbstractBaseJavaArchive implements JavaArchive {
-    private Collection<String> classes;
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractBaseJavaArchive.class);
     private final AnnotationScanner annotationScanner;
+    // Not synchronizing on this, since subclasses do and analysis might access them from other threads
+    private final Object summaryLock = new Object();
+    private SoftReference<ArchiveSummary> summary = new SoftReference<>(null);
+    private ArchiveStatistics statistics;
 
-    protected AbstractBaseJavaArchive(final URL... urls) {
-        this.annotationScanner = new AnnotationScanner(urls);
+    protected AbstractBaseJavaArchive() {
+        this.annotationScanner = new AnnotationScanner(() -> getSummary().getAnnotationIndex());
     }
 
     @Override
-    public final synchronized ClasspathResource findResource(final String s) {
+    public final ClasspathResource findResource(final String s) {
+        if (ArchiveSummary.INTERESTING_RESOURCES.contains(s)) {
+            return getSummary().getResource(s);
+        }
+        return lookup(s);
+    }
+
+    /**
+     * Looks up a resource in the archive. The default implementation iterates over all entries of the
+     * archive, subclasses with random access to their entries should override this.
+     *
+     * @param s the name of the resource to find.
+     * @return the resource if found, <code>null</code> otherwise.
+     */
+    protected ClasspathResource lookup(final String s) {
         final Callback<ClasspathResource> cb = (is, name) -> {
             if (name.equals(s)) {
                 return new ClasspathResource(is);
@@ -48,22 +75,99 @@ abstract class AbstractBaseJavaArchive implements JavaArchive {
     }
 
     @Override
-    public final synchronized Collection<String> getClasses() {
-        if (classes != null) {
-            return classes;
+    public final Collection<String> getClasses() {
+        return getSummary().getClasses();
+    }
+
+    @Override
+    public final ArchiveSummary getSummary() {
+        synchronized (summaryLock) {
+            ArchiveSummary ret = summary.get();
+            if (ret == null) {
+                if (statistics != null) {
+                    LOG.debug("Rebuilding evicted summary of {}", getRoot());
+                }
+                final long start = System.nanoTime();
+                final AtomicBoolean scanned = new AtomicBoolean();
+                final AtomicInteger entryCount = new AtomicInteger();
+                final AtomicLong bytesRead = new AtomicLong();
+                ret = ClasspathIndexCache.instance().get(getRoot(), () -> {
+                    scanned.set(true);
+                    final List<String> entries = entries();
+                    entryCount.set(entries.size());
+                    return ArchiveAnalyzer.analyze(this, entries, bytesRead);
+                });
+                // Softly referenced, so summaries of archives not accessed anymore can be evicted under memory
+                // pressure. They're rebuilt on demand, which is cheap when the index cache is enabled.
+                summary = new SoftReference<>(ret);
+                statistics = new ArchiveStatistics(
+                        getURL(),
+                        NANOSECONDS.toMillis(System.nanoTime() - start),
+                        entryCount.get(),
+                        bytesRead.get(),
+                        !scanned.get()
+                );
+            }
+            return ret;
         }
-        classes = new HashSet<>();
-        iterate((is, name) -> {
-            if (name.endsWith(".class")) {
-                classes.add(StringUtils.removeEnd(name.replace("/", "."), ".class"));
+    }
+
+    @Override
+    public Collection<ArchiveStatistics> getStatistics() {
+        synchronized (summaryLock) {
+            return statistics == null ? Collections.emptyList() : Collections.singletonList(statistics);
+        }
+    }
+
+    /**
+     * The JAR file or directory this archive is located at.
+     *
+     * @return the root of the archive.
+     */
+    protected abstract File getRoot();
+
+    /**
+     * The names of all files in the archive. Only needed for analyzing the archive, so implementations
+     * shouldn't hold on to the result.
+     *
+     * @return the names of the files, using <code>/</code> as separator.
+     */
+    protected abstract List<String> entries();
+
+    /**
+     * Provides access to the contents of a file in the archive. Must be callable from multiple threads
+     * concurrently.
+     *
+     * @param name the name of the file as returned by {@link #entries()}.
+     * @return the supplier for the file's contents.
+     */
+    protected abstract InputStreamSupplier open(String name);
+
+    /**
+     * The modification time of a file in the archive. Only archives whose contents can change
+     * independently of each other (like directories) need to provide this.
+     *
+     * @param name the name of the file as returned by {@link #entries()}.
+     * @return the modification time in milliseconds since the epoch or <code>0</code> if unknown.
+     */
+    protected long lastModified(final String name) {
+        return 0;
+    }
+
+    protected <T> T iterate(final Callback<T> cb) {
+        try {
+            for (final String entry : entries()) {
+                final T ret = cb.item(open(entry), entry);
+                if (ret != null) {
+                    return ret;
+                }
             }
             return null;
-        });
-        return classes;
+        } catch (final IOException e) {
+            throw new TestEEfiException("Could not read " + getRoot().getAbsolutePath(), e);
+        }
     }
 
-    protected abstract <T> T iterate(Callback<T> cb);
-
     protected interface Callback<T> {
         T item(InputStreamSupplier zipInputStream, String name) throws IOException;
     }
@@ -72,4 +176,14 @@ abstract class AbstractBaseJavaArchive implements JavaArchive {
     public Collection<Class<?>> annotatedWith(final Class<? extends Annotation>[] annotations) {
         return annotationScanner.scanFor(annotations);
     }
+
+    @Override
+    public Collection<String> classNamesAnnotatedWith(final Class<? extends Annotation>[] annotations) {
+        return annotationScanner.classNamesAnnotatedWith(annotations);
+    }
+
+    @Override
+    public boolean anyAnnotatedWith(final Class<? extends Annotation>[] annotations) {
+        return annotationScanner.anyAnnotatedWith(annotations);
+    }
 }
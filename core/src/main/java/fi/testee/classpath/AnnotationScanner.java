@@ -16,60 +16,123 @@
 package fi.testee.classpath;
 
 import fi.testee.exceptions.TestEEfiException;
-import org.scannotation.AnnotationDB;
 
-import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
- * Annotation scanning.
+ * Annotation scanning. Results are memoized per annotation and classes are only loaded when explicitly
+ * requested via {@link #scanFor(Class[])}. Thread safe.
  *
  * @author Alex Stockinger, IT-Stockinger
  */
 public class AnnotationScanner {
-    private final URL[] urls;
-    private Map<String, Set<String>> index;
+    private final Supplier<Map<String, Set<String>>> indexSupplier;
+    private final Map<String, Collection<Class<?>>> classes = new ConcurrentHashMap<>();
+    private SoftReference<Map<String, Set<String>>> index = new SoftReference<>(null);
 
     public AnnotationScanner(final URL... urls) {
-        this.urls = urls;
+        this(() -> scan(urls));
     }
 
-    public Collection<Class<?>> scanFor(Class<? extends Annotation>... annotations) {
-        final Collection<Class<?>> ret = new ArrayList<>();
-        Arrays.stream(annotations).forEach(annotation -> {
-                    final Set<String> classNames = index().get(annotation.getName());
-                    if (classNames != null) {
-                        classNames.forEach(clazz -> {
-                                    try {
-                                        ret.add(Class.forName(clazz));
-                                    } catch (final ClassNotFoundException e) {
-                                        throw new TestEEfiException("Failed to load class", e);
-                                    }
-                                }
-                        );
-                    }
-                }
-        );
+    AnnotationScanner(final Supplier<Map<String, Set<String>>> indexSupplier) {
+        this.indexSupplier = indexSupplier;
+    }
+
+    /**
+     * Returns the classes annotated with any of the given annotations, loading them if necessary.
+     *
+     * @param annotations the annotations to look for.
+     * @return the annotated classes.
+     */
+    @SafeVarargs
+    public final Collection<Class<?>> scanFor(final Class<? extends Annotation>... annotations) {
+        final Collection<Class<?>> ret = new LinkedHashSet<>();
+        Arrays.stream(annotations).forEach(annotation -> ret.addAll(classes.computeIfAbsent(
+                annotation.getName(),
+                name -> Collections.unmodifiableCollection(load(classNames(name)))
+        )));
         return ret;
     }
 
-    private synchronized Map<String, Set<String>> index() {
-        if (index == null) {
-            final AnnotationDB db = new AnnotationDB();
+    /**
+     * Returns the names of the classes annotated with any of the given annotations without loading them.
+     *
+     * @param annotations the annotations to look for.
+     * @return the names of the annotated classes.
+     */
+    @SafeVarargs
+    public final Collection<String> classNamesAnnotatedWith(final Class<? extends Annotation>... annotations) {
+        if (annotations.length == 1) {
+            return classNames(annotations[0].getName());
+        }
+        final Collection<String> ret = new HashSet<>();
+        Arrays.stream(annotations).forEach(annotation -> ret.addAll(classNames(annotation.getName())));
+        return ret;
+    }
+
+    /**
+     * Checks if there is at least one class annotated with any of the given annotations, without loading any
+     * classes.
+     *
+     * @param annotations the annotations to look for.
+     * @return <code>true</code> if at least one annotated class exists.
+     */
+    @SafeVarargs
+    public final boolean anyAnnotatedWith(final Class<? extends Annotation>... annotations) {
+        return Arrays.stream(annotations).anyMatch(annotation -> !classNames(annotation.getName()).isEmpty());
+    }
+
+    private Collection<String> classNames(final String annotation) {
+        final Set<String> ret = index().get(annotation);
+        return ret == null ? Collections.emptySet() : Collections.unmodifiableSet(ret);
+    }
+
+    private static Collection<Class<?>> load(final Collection<String> classNames) {
+        final ClassLoader classLoader = AnnotationScanner.class.getClassLoader();
+        final Collection<Class<?>> ret = new ArrayList<>(classNames.size());
+        classNames.forEach(clazz -> {
             try {
-                db.scanArchives(urls);
-            } catch (final IOException e) {
-                throw new TestEEfiException("Failed to perform annotation scanning", e);
+                // Static initializers are left to the first actual use of the class
+                ret.add(Class.forName(clazz, false, classLoader));
+            } catch (final ClassNotFoundException e) {
+                throw new TestEEfiException("Failed to load class", e);
             }
-            index = db.getAnnotationIndex();
+        });
+        return ret;
+    }
+
+    private synchronized Map<String, Set<String>> index() {
+        Map<String, Set<String>> ret = index.get();
+        if (ret == null) {
+            ret = indexSupplier.get();
+            // Softly referenced, the index can be rebuilt by the supplier after being evicted
+            index = new SoftReference<>(ret);
+        }
+        return ret;
+    }
 
+    static Map<String, Set<String>> scan(final URL... urls) {
+        final Map<String, Set<String>> ret = new HashMap<>();
+        for (final URL url : urls) {
+            try (final JavaArchive archive = Classpath.toJavaArchive(url)) {
+                archive.getSummary().getAnnotationIndex().forEach((annotation, classes) ->
+                        ret.computeIfAbsent(annotation, k -> new HashSet<>()).addAll(classes)
+                );
+            }
         }
-        return index;
+        return ret;
     }
 }
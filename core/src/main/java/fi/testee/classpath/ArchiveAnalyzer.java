@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import fi.testee.exceptions.TestEEfiException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Analysis of {@link AbstractBaseJavaArchive java archives}, collecting classes, annotations and interesting
+ * resources in a single pass over the archive's entries.
+ * <p>
+ * When invoked from within a {@link java.util.concurrent.ForkJoinPool}, large archives are split into ranges
+ * of entries which are analyzed in parallel by the pool.</p>
+ * <p>
+ * Archives containing an up to date {@link BuildTimeIndex build time index} aren't scanned at all.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class ArchiveAnalyzer {
+    private static final Logger LOG = LoggerFactory.getLogger(ArchiveAnalyzer.class);
+    // Classes in these packages are never relevant for annotation based discovery
+    private static final String[] IGNORED_PACKAGES = {"javax.", "java.", "sun.", "com.sun.", "javassist."};
+    // Number of entries below which a range of entries isn't split any further
+    private static final int RANGE_SIZE = 1024;
+    // Class files are written after annotation processing, so they're allowed to be a bit younger than the index
+    private static final long INDEX_TIMESTAMP_TOLERANCE_MILLIS = 60_000;
+
+    private ArchiveAnalyzer() {
+    }
+
+    /**
+     * Analyzes an archive.
+     *
+     * @param archive   the archive to analyze.
+     * @param entries   the {@link AbstractBaseJavaArchive#entries() entries} of the archive.
+     * @param bytesRead receives the number of bytes read from the archive.
+     * @return the summary of the archive.
+     */
+    static ArchiveSummary analyze(
+            final AbstractBaseJavaArchive archive,
+            final List<String> entries,
+            final AtomicLong bytesRead
+    ) {
+        final ArchiveSummary indexed = fromBuildTimeIndex(archive, entries, bytesRead);
+        if (indexed != null) {
+            return indexed;
+        }
+        final Result result = ForkJoinTask.inForkJoinPool() && entries.size() > RANGE_SIZE
+                ? new RangeTask(archive, entries, 0, entries.size()).invoke()
+                : analyze(archive, entries, 0, entries.size());
+        bytesRead.addAndGet(result.bytesRead);
+        return new ArchiveSummary(result.classes, result.annotationIndex, result.resources);
+    }
+
+    private static ArchiveSummary fromBuildTimeIndex(
+            final AbstractBaseJavaArchive archive,
+            final List<String> entries,
+            final AtomicLong bytesRead
+    ) {
+        final Collection<String> classes = new HashSet<>();
+        final Collection<String> resourceNames = new ArrayList<>();
+        boolean hasIndex = false;
+        for (final String name : entries) {
+            if (name.endsWith(".class")) {
+                classes.add(StringUtils.removeEnd(name.replace("/", "."), ".class"));
+            } else if (ArchiveSummary.INTERESTING_RESOURCES.contains(name)) {
+                resourceNames.add(name);
+            } else if (BuildTimeIndex.RESOURCE.equals(name)) {
+                hasIndex = true;
+            }
+        }
+        if (!hasIndex) {
+            return null;
+        }
+        try {
+            final BuildTimeIndex index;
+            try (final CountingInputStream in = new CountingInputStream(archive.open(BuildTimeIndex.RESOURCE).get())) {
+                index = BuildTimeIndex.read(in);
+                bytesRead.addAndGet(in.getByteCount());
+            }
+            if (index == null || !index.matches(classes) || isOutdated(archive, entries)) {
+                LOG.debug("Ignoring outdated build time index of {}", archive.getRoot());
+                return null;
+            }
+            final Map<String, byte[]> resources = new HashMap<>();
+            for (final String name : resourceNames) {
+                try (final InputStream in = archive.open(name).get()) {
+                    final byte[] data = IOUtils.toByteArray(in);
+                    bytesRead.addAndGet(data.length);
+                    resources.put(name, data);
+                }
+            }
+            final Map<String, Set<String>> annotationIndex = new HashMap<>();
+            index.getAnnotationIndex().forEach((annotation, annotated) -> annotated.stream()
+                    .filter(it -> !StringUtils.startsWithAny(it, IGNORED_PACKAGES))
+                    .forEach(it -> annotationIndex.computeIfAbsent(annotation, k -> new HashSet<>()).add(it)));
+            LOG.trace("Using build time index of {}", archive.getRoot());
+            return new ArchiveSummary(classes, annotationIndex, resources);
+        } catch (final IOException e) {
+            throw new TestEEfiException("Could not read " + archive.getRoot().getAbsolutePath(), e);
+        }
+    }
+
+    private static boolean isOutdated(final AbstractBaseJavaArchive archive, final List<String> entries) {
+        final long indexTimestamp = archive.lastModified(BuildTimeIndex.RESOURCE);
+        if (indexTimestamp <= 0) {
+            return false;
+        }
+        return entries.stream()
+                .filter(it -> it.endsWith(".class"))
+                .anyMatch(it -> archive.lastModified(it) > indexTimestamp + INDEX_TIMESTAMP_TOLERANCE_MILLIS);
+    }
+
+    private static Result analyze(
+            final AbstractBaseJavaArchive archive,
+            final List<String> entries,
+            final int from,
+            final int to
+    ) {
+        final Result result = new Result();
+        final List<String> annotations = new ArrayList<>();
+        final ReadBuffer buffer = new ReadBuffer();
+        try {
+            for (final String name : entries.subList(from, to)) {
+                if (name.endsWith(".class")) {
+                    final String className = StringUtils.removeEnd(name.replace("/", "."), ".class");
+                    result.classes.add(className);
+                    if (!StringUtils.startsWithAny(className, IGNORED_PACKAGES)) {
+                        final ByteBuffer classFile;
+                        try (final InputStream in = archive.open(name).get()) {
+                            classFile = buffer.read(in);
+                        }
+                        result.bytesRead += classFile.remaining();
+                        annotations.clear();
+                        final String declaredName = ClassFileAnnotationReader.read(classFile, annotations);
+                        annotations.forEach(annotation -> result.annotationIndex
+                                .computeIfAbsent(annotation, k -> new HashSet<>())
+                                .add(declaredName));
+                    }
+                } else if (ArchiveSummary.INTERESTING_RESOURCES.contains(name)) {
+                    try (final InputStream in = archive.open(name).get()) {
+                        final byte[] data = IOUtils.toByteArray(in);
+                        result.bytesRead += data.length;
+                        result.resources.put(name, data);
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            throw new TestEEfiException("Could not read " + archive.getRoot().getAbsolutePath(), e);
+        }
+        return result;
+    }
+
+    /**
+     * Partial result of analyzing a range of entries.
+     */
+    private static final class Result {
+        private final Collection<String> classes = new HashSet<>();
+        private final Map<String, Set<String>> annotationIndex = new HashMap<>();
+        private final Map<String, byte[]> resources = new HashMap<>();
+        private long bytesRead;
+
+        Result merge(final Result other) {
+            classes.addAll(other.classes);
+            other.annotationIndex.forEach((annotation, annotated) -> annotationIndex
+                    .computeIfAbsent(annotation, k -> new HashSet<>())
+                    .addAll(annotated));
+            resources.putAll(other.resources);
+            bytesRead += other.bytesRead;
+            return this;
+        }
+    }
+
+    private static final class RangeTask extends RecursiveTask<Result> {
+        private final AbstractBaseJavaArchive archive;
+        private final List<String> entries;
+        private final int from;
+        private final int to;
+
+        RangeTask(final AbstractBaseJavaArchive archive, final List<String> entries, final int from, final int to) {
+            this.archive = archive;
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from <= RANGE_SIZE) {
+                return analyze(archive, entries, from, to);
+            }
+            final int middle = (from + to) >>> 1;
+            final RangeTask left = new RangeTask(archive, entries, from, middle);
+            left.fork();
+            final Result right = new RangeTask(archive, entries, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Reusable buffer for reading class files, avoiding an allocation per class.
+     */
+    private static final class ReadBuffer {
+        private byte[] bytes = new byte[8192];
+
+        ByteBuffer read(final InputStream in) throws IOException {
+            int length = 0;
+            int read;
+            while ((read = in.read(bytes, length, bytes.length - length)) != -1) {
+                length += read;
+                if (length == bytes.length) {
+                    final byte[] grown = new byte[bytes.length * 2];
+                    System.arraycopy(bytes, 0, grown, 0, length);
+                    bytes = grown;
+                }
+            }
+            return ByteBuffer.wrap(bytes, 0, length);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import java.net.URL;
+
+/**
+ * Statistics about obtaining the {@link ArchiveSummary summary} of a {@link JavaArchive}. Immutable.
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+public final class ArchiveStatistics {
+    private final URL url;
+    private final long durationMillis;
+    private final int entries;
+    private final long bytesRead;
+    private final boolean cached;
+
+    ArchiveStatistics(
+            final URL url,
+            final long durationMillis,
+            final int entries,
+            final long bytesRead,
+            final boolean cached
+    ) {
+        this.url = url;
+        this.durationMillis = durationMillis;
+        this.entries = entries;
+        this.bytesRead = bytesRead;
+        this.cached = cached;
+    }
+
+    /**
+     * The URL of the archive.
+     *
+     * @return the URL.
+     */
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * The time it took to obtain the summary.
+     *
+     * @return the duration in milliseconds.
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * The number of entries in the archive, zero if the summary was {@link #isCached() cached}.
+     *
+     * @return the number of entries.
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * The number of bytes read from class files and interesting resources, zero if the summary was
+     * {@link #isCached() cached}.
+     *
+     * @return the number of bytes read.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Whether the summary was taken from the {@link ClasspathIndexCache index cache}.
+     *
+     * @return <code>true</code> if the archive wasn't scanned.
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    @Override
+    public String toString() {
+        return url + ": " + durationMillis + "ms, " + entries + " entries, " + bytesRead + " bytes" +
+                (cached ? " (cached)" : "");
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The result of analyzing a {@link JavaArchive}: the contained classes, the annotation index and the
+ * contents of the {@link #INTERESTING_RESOURCES interesting resources}. Immutable.
+ * <p>
+ * Class names are held in {@link ClassNameSet compact sets}, since summaries of all classpath entries are
+ * kept in memory.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+public final class ArchiveSummary {
+    /**
+     * The resources whose contents are captured during analysis.
+     */
+    public static final Set<String> INTERESTING_RESOURCES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "META-INF/beans.xml",
+            "META-INF/testee.fi",
+            "META-INF/persistence.xml"
+    )));
+
+    private final Collection<String> classes;
+    private final Map<String, Set<String>> annotationIndex;
+    private final Map<String, byte[]> resources;
+
+    /**
+     * Constructor.
+     *
+     * @param classes         the fully qualified names of all classes in the archive.
+     * @param annotationIndex the annotation index (annotation class name to annotated class names).
+     * @param resources       the contents of the {@link #INTERESTING_RESOURCES interesting resources} present
+     *                        in the archive.
+     */
+    ArchiveSummary(
+            final Collection<String> classes,
+            final Map<String, Set<String>> annotationIndex,
+            final Map<String, byte[]> resources
+    ) {
+        this.classes = ClassNameSet.of(classes);
+        final Map<String, Set<String>> compactIndex = new HashMap<>(annotationIndex.size() * 2);
+        annotationIndex.forEach((annotation, annotated) -> compactIndex.put(annotation, ClassNameSet.of(annotated)));
+        this.annotationIndex = Collections.unmodifiableMap(compactIndex);
+        this.resources = Collections.unmodifiableMap(resources);
+    }
+
+    /**
+     * Returns all classes in the archive.
+     *
+     * @return the fully qualified names of all classes.
+     */
+    public Collection<String> getClasses() {
+        return classes;
+    }
+
+    /**
+     * Returns the annotation index of the archive.
+     *
+     * @return a map from annotation class names to the names of the classes annotated with them.
+     */
+    public Map<String, Set<String>> getAnnotationIndex() {
+        return annotationIndex;
+    }
+
+    Map<String, byte[]> getResources() {
+        return resources;
+    }
+
+    /**
+     * Indicates if the summary can tell whether the archive contains the given resource, i.e. if it's an
+     * {@link #INTERESTING_RESOURCES interesting resource} or a class file.
+     *
+     * @param name the name of the resource.
+     * @return <code>true</code> if {@link #hasResource(String)} can answer for the resource.
+     */
+    public boolean knows(final String name) {
+        return INTERESTING_RESOURCES.contains(name) || name.endsWith(".class");
+    }
+
+    /**
+     * Indicates if the archive contains the given resource. Only valid for resources the summary
+     * {@link #knows(String) knows about}.
+     *
+     * @param name the name of the resource.
+     * @return <code>true</code> if the resource is present in the archive.
+     */
+    public boolean hasResource(final String name) {
+        if (name.endsWith(".class")) {
+            return classes.contains(StringUtils.removeEnd(name, ".class").replace('/', '.'));
+        }
+        return resources.containsKey(name);
+    }
+
+    /**
+     * Returns one of the {@link #INTERESTING_RESOURCES interesting resources} of the archive.
+     *
+     * @param name the name of the resource.
+     * @return the resource or <code>null</code> if it's not present in the archive.
+     */
+    public ClasspathResource getResource(final String name) {
+        final byte[] data = resources.get(name);
+        return data == null ? null : new ClasspathResource(() -> new ByteArrayInputStream(data));
+    }
+}
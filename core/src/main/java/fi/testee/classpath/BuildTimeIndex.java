@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The annotation index written at build time by the <code>testeefi-index</code> annotation processor.
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class BuildTimeIndex {
+    static final String RESOURCE = "META-INF/testee.fi-index";
+    private static final String HEADER = "# testee.fi-index v1";
+    // Anonymous and local classes as well as package and module descriptors are invisible to the processor
+    private static final Pattern INVISIBLE_TO_PROCESSOR = Pattern.compile(".*(\\$\\d[^.]*|package-info|module-info)$");
+
+    private final Set<String> classes;
+    private final Map<String, Set<String>> annotationIndex;
+
+    private BuildTimeIndex(final Set<String> classes, final Map<String, Set<String>> annotationIndex) {
+        this.classes = classes;
+        this.annotationIndex = annotationIndex;
+    }
+
+    /**
+     * Reads an index.
+     *
+     * @param in the stream to read the index from.
+     * @return the index or <code>null</code> if the index has an unknown format.
+     * @throws IOException if reading fails.
+     */
+    static BuildTimeIndex read(final InputStream in) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        if (!HEADER.equals(reader.readLine())) {
+            return null;
+        }
+        final Set<String> classes = new HashSet<>();
+        final Map<String, Set<String>> annotationIndex = new HashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            final String[] parts = StringUtils.split(line, ' ');
+            classes.add(parts[0]);
+            for (int i = 1; i < parts.length; i++) {
+                annotationIndex.computeIfAbsent(parts[i], k -> new HashSet<>()).add(parts[0]);
+            }
+        }
+        return new BuildTimeIndex(classes, annotationIndex);
+    }
+
+    /**
+     * Checks if the index covers exactly the classes present in the archive, i.e. no classes have been added
+     * or removed since the index was written.
+     *
+     * @param archiveClasses the names of the classes in the archive.
+     * @return <code>true</code> if the index matches the classes.
+     */
+    boolean matches(final Collection<String> archiveClasses) {
+        int visible = 0;
+        for (final String className : archiveClasses) {
+            if (INVISIBLE_TO_PROCESSOR.matcher(className).matches()) {
+                continue;
+            }
+            if (!classes.contains(className)) {
+                return false;
+            }
+            visible++;
+        }
+        return visible == classes.size();
+    }
+
+    /**
+     * The annotation index (annotation class name to annotated class names).
+     *
+     * @return the annotation index.
+     */
+    Map<String, Set<String>> getAnnotationIndex() {
+        return annotationIndex;
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import fi.testee.exceptions.TestEEfiException;
+
+import javax.lang.model.element.NestingKind;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Minimal class file parser extracting the runtime visible annotations of a class and its members, and
+ * optionally the {@link ClassHeader header} of the class.
+ * <p>
+ * Only the constant pool and the <code>RuntimeVisibleAnnotations</code> and
+ * <code>RuntimeVisibleParameterAnnotations</code> attributes (and <code>InnerClasses</code> for headers) are
+ * interpreted, everything else (including method bodies) is skipped. Strings are only decoded from the
+ * constant pool when they're actually needed.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class ClassFileAnnotationReader {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS = ascii("RuntimeVisibleAnnotations");
+    private static final byte[] RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS = ascii("RuntimeVisibleParameterAnnotations");
+    private static final byte[] INNER_CLASSES = ascii("InnerClasses");
+    private static final byte[] CONSTRUCTOR = ascii("<init>");
+    private static final byte[] NO_ARGS_DESCRIPTOR = ascii("()V");
+    private static final int ACC_SUPER = 0x0020;
+
+    private final ByteBuffer buffer;
+    private int[] offsets;
+
+    private ClassFileAnnotationReader(final ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Reads the annotations of a class file.
+     *
+     * @param classFile   the contents of the class file.
+     * @param annotations the collection to add the names of the annotations of the class and its fields,
+     *                    methods and method parameters to.
+     * @return the fully qualified name of the class.
+     */
+    static String read(final ByteBuffer classFile, final Collection<String> annotations) {
+        try {
+            return new ClassFileAnnotationReader(classFile.slice()).read(annotations);
+        } catch (final BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new TestEEfiException("Malformed class file", e);
+        }
+    }
+
+    /**
+     * Reads the {@link ClassHeader header} of a class file.
+     *
+     * @param classFile the contents of the class file.
+     * @return the header.
+     */
+    static ClassHeader readHeader(final ByteBuffer classFile) {
+        try {
+            return new ClassFileAnnotationReader(classFile.slice()).readHeader();
+        } catch (final BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new TestEEfiException("Malformed class file", e);
+        }
+    }
+
+    private ClassHeader readHeader() {
+        if (buffer.getInt() != MAGIC) {
+            throw new TestEEfiException("Not a class file");
+        }
+        buffer.getInt(); // minor & major version
+        readConstantPool();
+        int modifiers = u2() & ~ACC_SUPER;
+        final String className = className(u2());
+        final int superclassIndex = u2();
+        final String superclassName = superclassIndex == 0 ? null : className(superclassIndex);
+        final int interfaceCount = u2();
+        final List<String> interfaceNames = new ArrayList<>(interfaceCount);
+        for (int i = 0; i < interfaceCount; i++) {
+            interfaceNames.add(className(u2()));
+        }
+        final Set<String> annotations = new HashSet<>();
+        readMembers(annotations); // fields
+        boolean noArgsConstructor = false;
+        final Set<String> constructorAnnotations = new HashSet<>();
+        final int methodCount = u2();
+        for (int i = 0; i < methodCount; i++) {
+            skip(2); // access flags
+            final int nameIndex = u2();
+            final int descriptorIndex = u2();
+            if (utf8Equals(nameIndex, CONSTRUCTOR)) {
+                noArgsConstructor |= utf8Equals(descriptorIndex, NO_ARGS_DESCRIPTOR);
+                readAttributes(constructorAnnotations);
+            } else {
+                readAttributes(annotations);
+            }
+        }
+        annotations.addAll(constructorAnnotations);
+        NestingKind nestingKind = NestingKind.TOP_LEVEL;
+        final Set<String> declaredAnnotations = new HashSet<>();
+        final int attributeCount = u2();
+        for (int i = 0; i < attributeCount; i++) {
+            final int nameIndex = u2();
+            final int length = buffer.getInt();
+            final int end = buffer.position() + length;
+            if (utf8Equals(nameIndex, RUNTIME_VISIBLE_ANNOTATIONS)) {
+                readAnnotations(declaredAnnotations);
+            } else if (utf8Equals(nameIndex, INNER_CLASSES)) {
+                final int classes = u2();
+                for (int c = 0; c < classes; c++) {
+                    final int innerClassIndex = u2();
+                    final int outerClassIndex = u2();
+                    final int innerNameIndex = u2();
+                    final int innerAccessFlags = u2();
+                    if (className.equals(className(innerClassIndex))) {
+                        // Nested classes have their actual modifiers (like static) only declared here
+                        modifiers = innerAccessFlags;
+                        if (outerClassIndex != 0) {
+                            nestingKind = NestingKind.MEMBER;
+                        } else {
+                            nestingKind = innerNameIndex == 0 ? NestingKind.ANONYMOUS : NestingKind.LOCAL;
+                        }
+                    }
+                }
+            }
+            buffer.position(end);
+        }
+        annotations.addAll(declaredAnnotations);
+        return new ClassHeader(
+                className,
+                superclassName,
+                interfaceNames,
+                modifiers,
+                nestingKind,
+                declaredAnnotations,
+                annotations,
+                noArgsConstructor,
+                constructorAnnotations
+        );
+    }
+
+    private String read(final Collection<String> annotations) {
+        if (buffer.getInt() != MAGIC) {
+            throw new TestEEfiException("Not a class file");
+        }
+        buffer.getInt(); // minor & major version
+        readConstantPool();
+        buffer.getShort(); // access flags
+        final String className = className(u2());
+        buffer.getShort(); // super class
+        skip(2 * u2()); // interfaces
+        readMembers(annotations); // fields
+        readMembers(annotations); // methods
+        readAttributes(annotations);
+        return className;
+    }
+
+    private void readConstantPool() {
+        final int count = u2();
+        offsets = new int[count];
+        for (int i = 1; i < count; i++) {
+            offsets[i] = buffer.position();
+            final int tag = buffer.get();
+            switch (tag) {
+                case 1: // Utf8
+                    skip(u2());
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    skip(2);
+                    break;
+                case 15: // MethodHandle
+                    skip(3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    skip(4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    skip(8);
+                    i++;
+                    break;
+                default:
+                    throw new TestEEfiException("Unknown constant pool tag " + tag);
+            }
+        }
+    }
+
+    private void readMembers(final Collection<String> annotations) {
+        final int count = u2();
+        for (int i = 0; i < count; i++) {
+            skip(6); // access flags, name & descriptor
+            readAttributes(annotations);
+        }
+    }
+
+    private void readAttributes(final Collection<String> annotations) {
+        final int count = u2();
+        for (int i = 0; i < count; i++) {
+            final int nameIndex = u2();
+            final int length = buffer.getInt();
+            final int end = buffer.position() + length;
+            if (utf8Equals(nameIndex, RUNTIME_VISIBLE_ANNOTATIONS)) {
+                readAnnotations(annotations);
+            } else if (utf8Equals(nameIndex, RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS)) {
+                final int parameters = buffer.get() & 0xFF;
+                for (int p = 0; p < parameters; p++) {
+                    readAnnotations(annotations);
+                }
+            }
+            buffer.position(end);
+        }
+    }
+
+    private void readAnnotations(final Collection<String> annotations) {
+        final int count = u2();
+        for (int i = 0; i < count; i++) {
+            annotations.add(typeName(utf8(u2())));
+            skipElementValuePairs();
+        }
+    }
+
+    private void skipAnnotation() {
+        skip(2); // type
+        skipElementValuePairs();
+    }
+
+    private void skipElementValuePairs() {
+        final int pairs = u2();
+        for (int i = 0; i < pairs; i++) {
+            skip(2); // name
+            skipElementValue();
+        }
+    }
+
+    private void skipElementValue() {
+        final int tag = buffer.get();
+        switch (tag) {
+            case 'e':
+                skip(4);
+                break;
+            case '@':
+                skipAnnotation();
+                break;
+            case '[':
+                final int count = u2();
+                for (int i = 0; i < count; i++) {
+                    skipElementValue();
+                }
+                break;
+            default:
+                // B, C, D, F, I, J, S, Z, s and c all reference a single constant pool entry
+                skip(2);
+        }
+    }
+
+    private String className(final int classIndex) {
+        return utf8(buffer.getShort(offsets[classIndex] + 1) & 0xFFFF).replace('/', '.');
+    }
+
+    private boolean utf8Equals(final int index, final byte[] expected) {
+        final int offset = offsets[index];
+        if (buffer.get(offset) != 1 || (buffer.getShort(offset + 1) & 0xFFFF) != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(offset + 3 + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String utf8(final int index) {
+        final int offset = offsets[index];
+        final int length = buffer.getShort(offset + 1) & 0xFFFF;
+        final char[] chars = new char[length];
+        int pos = offset + 3;
+        final int end = pos + length;
+        int count = 0;
+        while (pos < end) {
+            final int b = buffer.get(pos++) & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (buffer.get(pos++) & 0x3F));
+            } else {
+                final int b2 = buffer.get(pos++) & 0x3F;
+                final int b3 = buffer.get(pos++) & 0x3F;
+                chars[count++] = (char) (((b & 0x0F) << 12) | (b2 << 6) | b3);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static String typeName(final String descriptor) {
+        // Lcom/acme/Annotation; -> com.acme.Annotation
+        return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+    }
+
+    private int u2() {
+        return buffer.getShort() & 0xFFFF;
+    }
+
+    private void skip(final int bytes) {
+        buffer.position(buffer.position() + bytes);
+    }
+
+    private static byte[] ascii(final String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
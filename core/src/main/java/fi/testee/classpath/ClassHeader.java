@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import javax.lang.model.element.NestingKind;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The structure of a class as declared in its class file, obtained without loading the class. Immutable.
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+public final class ClassHeader {
+    private final String className;
+    private final String superclassName;
+    private final List<String> interfaceNames;
+    private final int modifiers;
+    private final NestingKind nestingKind;
+    private final Set<String> declaredAnnotations;
+    private final Set<String> annotations;
+    private final boolean noArgsConstructor;
+    private final Set<String> constructorAnnotations;
+
+    ClassHeader(
+            final String className,
+            final String superclassName,
+            final List<String> interfaceNames,
+            final int modifiers,
+            final NestingKind nestingKind,
+            final Set<String> declaredAnnotations,
+            final Set<String> annotations,
+            final boolean noArgsConstructor,
+            final Set<String> constructorAnnotations
+    ) {
+        this.className = className;
+        this.superclassName = superclassName;
+        this.interfaceNames = Collections.unmodifiableList(interfaceNames);
+        this.modifiers = modifiers;
+        this.nestingKind = nestingKind;
+        this.declaredAnnotations = Collections.unmodifiableSet(declaredAnnotations);
+        this.annotations = Collections.unmodifiableSet(annotations);
+        this.noArgsConstructor = noArgsConstructor;
+        this.constructorAnnotations = Collections.unmodifiableSet(constructorAnnotations);
+    }
+
+    /**
+     * Reads the header of a class file.
+     *
+     * @param classFile the contents of the class file.
+     * @return the header.
+     * @throws fi.testee.exceptions.TestEEfiException if the class file is malformed.
+     */
+    public static ClassHeader read(final ByteBuffer classFile) {
+        return ClassFileAnnotationReader.readHeader(classFile);
+    }
+
+    /**
+     * The fully qualified name of the class.
+     *
+     * @return the name of the class.
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * The fully qualified name of the superclass.
+     *
+     * @return the name of the superclass or <code>null</code> for {@link Object}.
+     */
+    public String getSuperclassName() {
+        return superclassName;
+    }
+
+    /**
+     * The fully qualified names of the directly implemented interfaces.
+     *
+     * @return the names of the interfaces.
+     */
+    public List<String> getInterfaceNames() {
+        return interfaceNames;
+    }
+
+    /**
+     * The modifiers of the class as returned by {@link Class#getModifiers()}.
+     *
+     * @return the modifiers.
+     */
+    public int getModifiers() {
+        return modifiers;
+    }
+
+    /**
+     * How the class is nested.
+     *
+     * @return the nesting kind.
+     */
+    public NestingKind getNestingKind() {
+        return nestingKind;
+    }
+
+    /**
+     * The runtime visible annotations declared on the class itself.
+     *
+     * @return the fully qualified names of the annotations.
+     */
+    public Collection<String> getDeclaredAnnotations() {
+        return declaredAnnotations;
+    }
+
+    /**
+     * The runtime visible annotations of the class and its fields, methods and method parameters.
+     *
+     * @return the fully qualified names of the annotations.
+     */
+    public Collection<String> getAnnotations() {
+        return annotations;
+    }
+
+    /**
+     * Indicates if the class declares a constructor without parameters.
+     *
+     * @return <code>true</code> if a constructor without parameters is declared.
+     */
+    public boolean hasNoArgsConstructor() {
+        return noArgsConstructor;
+    }
+
+    /**
+     * The runtime visible annotations of the declared constructors and their parameters.
+     *
+     * @return the fully qualified names of the annotations.
+     */
+    public Collection<String> getConstructorAnnotations() {
+        return constructorAnnotations;
+    }
+
+    @Override
+    public String toString() {
+        return "ClassHeader{" +
+                "className='" + className + '\'' +
+                '}';
+    }
+}
@@ -15,6 +15,7 @@
  */
 package fi.testee.classpath;
 
+import fi.testee.config.TestEEfiConfiguration;
 import fi.testee.utils.UrlUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -27,89 +28,167 @@ import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
-import static java.util.Arrays.stream;
-import static java.util.stream.Collectors.toSet;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Retrieving the URLs of the classpath JARs from a
  * {@link URLClassLoader} implementation as provided by Oracle's JRE8.
+ * <p>
+ * Entries are canonicalized and deduplicated, <code>Class-Path</code> manifest entries of JAR files are
+ * followed transitively (each JAR's manifest is read only once, in parallel for all JARs discovered in the
+ * same step). The manifests are read on a pool of its own, sized like the discovery pool by the
+ * {@link TestEEfiConfiguration configuration} key <code>testeefi.discovery.threads</code>, so the I/O neither
+ * blocks nor is blocked by users of the common pool.</p>
  *
  * @author Alex Stockinger, IT-Stockinger
  */
 public class ClassLoaderAnalyzer {
     private static final Logger LOG = LoggerFactory.getLogger(ClassLoaderAnalyzer.class);
+    public static final String THREADS = "testeefi.discovery.threads";
 
     private ClassLoaderAnalyzer() {
     }
 
-    public static Set<URL> getClasspath(final ClassLoader classLoader) {
+    /**
+     * Collects the classpath of a class loader.
+     *
+     * @param classLoader the class loader.
+     * @return the URLs of the existing classpath entries in a stable order: the class loader's entries before
+     * its parents' entries before the ones from <code>java.class.path</code>, each JAR followed by the
+     * entries of its manifest's <code>Class-Path</code>.
+     */
+    public static List<URL> getClasspath(final ClassLoader classLoader) {
         LOG.trace("System properties: {}", System.getProperties());
-        final Set<URL> collect = collectFromClasspath(classLoader);
-        collect.addAll(collectFromLibraryPath());
-        return collect;
+        final Set<File> roots = new LinkedHashSet<>();
+        collectFromClassLoader(classLoader, roots);
+        collectFromLibraryPath(roots);
+        final Map<File, List<File>> manifestClassPaths = readManifestClassPaths(roots);
+        final Set<File> ordered = new LinkedHashSet<>();
+        roots.forEach(it -> addTransitive(it, manifestClassPaths, ordered));
+        return ordered.stream().map(UrlUtils::toUrl).collect(toList());
     }
 
-    private static Set<URL> collectFromLibraryPath() {
-        return stream(StringUtils.split(System.getProperty("java.class.path"), File.pathSeparatorChar))
-                .map(it -> new File(it).getAbsoluteFile())
-                .filter(File::exists) // Early out non-existent files
-                .map(UrlUtils::toUrl)
-                .collect(toSet());
+    private static void collectFromLibraryPath(final Set<File> ret) {
+        final String classPath = System.getProperty("java.class.path");
+        if (StringUtils.isBlank(classPath)) {
+            return;
+        }
+        for (final String entry : StringUtils.split(classPath, File.pathSeparatorChar)) {
+            addIfExists(new File(entry), ret);
+        }
     }
 
-    private static Set<URL> collectFromClasspath(ClassLoader classLoader) {
-        if (!(classLoader instanceof URLClassLoader)) {
-            return Collections.emptySet();
+    private static void collectFromClassLoader(final ClassLoader classLoader, final Set<File> ret) {
+        ClassLoader current = classLoader;
+        while (current != null) {
+            if (current instanceof URLClassLoader) {
+                for (final URL url : ((URLClassLoader) current).getURLs()) {
+                    addIfExists(UrlUtils.toFile(url), ret);
+                }
+            }
+            if (current.getParent() == current) {
+                break;
+            }
+            current = current.getParent();
         }
-        final Set<URL> ret = new HashSet<>();
-        ret.addAll(stream(((URLClassLoader) classLoader).getURLs())
-                .map(ClassLoaderAnalyzer::collectTransitive)
-                .flatMap(Collection::stream)
-                .collect(toSet()));
-        if (classLoader.getParent() != classLoader && classLoader.getParent() != null) {
-            ret.addAll(collectFromClasspath(classLoader.getParent()));
+    }
+
+    private static void addIfExists(final File file, final Set<File> ret) {
+        final File canonical = canonical(file);
+        if (canonical.exists()) {
+            ret.add(canonical);
         }
-        return ret;
     }
 
-    private static List<URL> collectTransitive(final URL start) {
-        final File startFile = new File(start.getFile());
-        if (!startFile.exists()) {
-            return Collections.emptyList();
+    private static File canonical(final File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (final IOException e) {
+            LOG.trace("Failed to canonicalize {}", file, e);
+            return file.getAbsoluteFile();
         }
-        final List<URL> ret = new ArrayList<>();
-        ret.add(start);
-        if (startFile.isFile()) {
-            getClassPathsFromManifest(start).stream()
-                    .map(ClassLoaderAnalyzer::collectTransitive)
-                    .forEach(ret::addAll);
+    }
+
+    /*
+     * Reads the manifests of all JARs reachable from the given roots, one generation of newly discovered JARs
+     * at a time.
+     */
+    private static Map<File, List<File>> readManifestClassPaths(final Collection<File> roots) {
+        final Map<File, List<File>> ret = new HashMap<>();
+        List<File> pending = roots.stream().filter(File::isFile).collect(toList());
+        final Set<File> visited = new HashSet<>(pending);
+        final int threads = TestEEfiConfiguration.instance()
+                .getInt(THREADS, Runtime.getRuntime().availableProcessors());
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            while (!pending.isEmpty()) {
+                final List<File> current = pending;
+                // Parallel streams started from within a pool run on that pool instead of the common pool
+                final List<List<File>> classPaths = pool.submit(() -> current.parallelStream()
+                        .map(ClassLoaderAnalyzer::getClassPathFromManifest)
+                        .collect(toList())
+                ).join();
+                final List<File> next = new ArrayList<>();
+                for (int i = 0; i < current.size(); i++) {
+                    ret.put(current.get(i), classPaths.get(i));
+                    classPaths.get(i).stream()
+                            .filter(File::isFile)
+                            .filter(visited::add)
+                            .forEach(next::add);
+                }
+                pending = next;
+            }
+        } finally {
+            pool.shutdown();
         }
         return ret;
     }
 
-    private static List<URL> getClassPathsFromManifest(final URL jarUrl) {
-        try {
-            final String classPath = safeGetClassPath(new JarFile(jarUrl.getFile()));
-            if (!StringUtils.isBlank(classPath)) {
-                final StringTokenizer tokenizer = new StringTokenizer(classPath);
-                final List<URL> urls = new ArrayList<>(tokenizer.countTokens());
-                while (tokenizer.hasMoreTokens()) {
-                    urls.add(new URL(jarUrl, tokenizer.nextToken()));
+    private static void addTransitive(
+            final File file,
+            final Map<File, List<File>> manifestClassPaths,
+            final Set<File> ret
+    ) {
+        if (!ret.add(file)) {
+            // Already visited, also prevents infinite recursion on cyclic Class-Path entries
+            return;
+        }
+        manifestClassPaths.getOrDefault(file, Collections.emptyList())
+                .forEach(it -> addTransitive(it, manifestClassPaths, ret));
+    }
+
+    private static List<File> getClassPathFromManifest(final File jar) {
+        try (final JarFile jarFile = new JarFile(jar)) {
+            final String classPath = safeGetClassPath(jarFile);
+            if (StringUtils.isBlank(classPath)) {
+                return Collections.emptyList();
+            }
+            final URL jarUrl = UrlUtils.toUrl(jar);
+            final StringTokenizer tokenizer = new StringTokenizer(classPath);
+            final List<File> ret = new ArrayList<>(tokenizer.countTokens());
+            while (tokenizer.hasMoreTokens()) {
+                final File entry = canonical(UrlUtils.toFile(new URL(jarUrl, tokenizer.nextToken())));
+                if (entry.exists()) {
+                    ret.add(entry);
                 }
-                return urls;
             }
-        } catch (IOException e) {
-            LOG.warn("Could not open JAR for URL " + jarUrl, e);
+            return ret;
+        } catch (final IOException e) {
+            LOG.warn("Could not open JAR " + jar, e);
+            return Collections.emptyList();
         }
-        return Collections.emptyList();
     }
 
     private static String safeGetClassPath(final JarFile jar) throws IOException {
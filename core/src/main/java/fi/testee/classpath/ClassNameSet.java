@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact set of fully qualified class names. Immutable and thus thread safe.
+ * <p>
+ * Instead of one {@link String} per class, the distinct package names are stored once and the simple names
+ * are concatenated into a single string, sorted by package and simple name. Lookups are binary searches,
+ * the strings returned by the iterator are created on the fly.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class ClassNameSet extends AbstractSet<String> {
+    static final ClassNameSet EMPTY = new ClassNameSet(new String[0], new int[]{0}, "", new int[]{0});
+
+    // Sorted, the default package is the empty string
+    private final String[] packages;
+    // The index of the first simple name of each package, followed by the total number of names
+    private final int[] packageStarts;
+    private final String names;
+    // The offset of each simple name in names, followed by the length of names
+    private final int[] nameOffsets;
+
+    private ClassNameSet(
+            final String[] packages,
+            final int[] packageStarts,
+            final String names,
+            final int[] nameOffsets
+    ) {
+        this.packages = packages;
+        this.packageStarts = packageStarts;
+        this.names = names;
+        this.nameOffsets = nameOffsets;
+    }
+
+    /**
+     * Creates a set containing the given class names.
+     *
+     * @param classNames the fully qualified class names.
+     * @return the set.
+     */
+    static ClassNameSet of(final Collection<String> classNames) {
+        if (classNames instanceof ClassNameSet) {
+            return (ClassNameSet) classNames;
+        }
+        if (classNames.isEmpty()) {
+            return EMPTY;
+        }
+        final String[] sorted = classNames.stream()
+                .distinct()
+                .sorted(ClassNameSet::compare)
+                .toArray(String[]::new);
+        final String[] packages = new String[sorted.length];
+        final int[] packageStarts = new int[sorted.length + 1];
+        final StringBuilder names = new StringBuilder();
+        final int[] nameOffsets = new int[sorted.length + 1];
+        int packageCount = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            final int separator = sorted[i].lastIndexOf('.');
+            final String packageName = separator < 0 ? "" : sorted[i].substring(0, separator);
+            if (packageCount == 0 || !packages[packageCount - 1].equals(packageName)) {
+                packages[packageCount] = packageName;
+                packageStarts[packageCount] = i;
+                packageCount++;
+            }
+            nameOffsets[i] = names.length();
+            names.append(sorted[i], separator + 1, sorted[i].length());
+        }
+        packageStarts[packageCount] = sorted.length;
+        nameOffsets[sorted.length] = names.length();
+        return new ClassNameSet(
+                Arrays.copyOf(packages, packageCount),
+                Arrays.copyOf(packageStarts, packageCount + 1),
+                names.toString(),
+                nameOffsets
+        );
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        final String className = (String) o;
+        final int separator = className.lastIndexOf('.');
+        final int packageIndex = Arrays.binarySearch(
+                packages,
+                separator < 0 ? "" : className.substring(0, separator)
+        );
+        if (packageIndex < 0) {
+            return false;
+        }
+        int low = packageStarts[packageIndex];
+        int high = packageStarts[packageIndex + 1] - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int cmp = compareName(middle, className, separator + 1);
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return nameOffsets.length - 1;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int index;
+            private int packageIndex;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                while (packageStarts[packageIndex + 1] <= index) {
+                    packageIndex++;
+                }
+                final String simpleName = names.substring(nameOffsets[index], nameOffsets[index + 1]);
+                index++;
+                final String packageName = packages[packageIndex];
+                return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+            }
+        };
+    }
+
+    // Compares the simple name at the given index to the part of the class name starting at the given offset
+    private int compareName(final int index, final String className, final int offset) {
+        final int start = nameOffsets[index];
+        final int length = nameOffsets[index + 1] - start;
+        final int otherLength = className.length() - offset;
+        final int common = Math.min(length, otherLength);
+        for (int i = 0; i < common; i++) {
+            final int cmp = names.charAt(start + i) - className.charAt(offset + i);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - otherLength;
+    }
+
+    private static int compare(final String a, final String b) {
+        final int separatorA = a.lastIndexOf('.');
+        final int separatorB = b.lastIndexOf('.');
+        final int cmp = (separatorA < 0 ? "" : a.substring(0, separatorA))
+                .compareTo(separatorB < 0 ? "" : b.substring(0, separatorB));
+        return cmp != 0 ? cmp : a.substring(separatorA + 1).compareTo(b.substring(separatorB + 1));
+    }
+}
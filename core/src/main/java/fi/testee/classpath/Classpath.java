@@ -32,6 +32,7 @@ import java.util.stream.Collectors;
 public class Classpath {
     private static final Logger LOG = LoggerFactory.getLogger(Classpath.class);
     private final ClassLoader classLoader;
+    private final ClasspathFilter filter;
 
     private Collection<JavaArchive> entries;
 
@@ -41,13 +42,24 @@ public class Classpath {
      * @param classLoader the {@link ClassLoader} to be used for retrieving the classpath entries.
      */
     public Classpath(final ClassLoader classLoader) {
+        this(classLoader, ClasspathFilter.fromConfiguration());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param classLoader the {@link ClassLoader} to be used for retrieving the classpath entries.
+     * @param filter      the filter selecting the classpath entries to be used.
+     */
+    public Classpath(final ClassLoader classLoader, final ClasspathFilter filter) {
         this.classLoader = classLoader;
+        this.filter = filter;
     }
 
     /**
      * Returns all {@link JavaArchive java archives} on the classpath.
      *
-     * @return all {@link JavaArchive java archives} on the classpath.
+     * @return all {@link JavaArchive java archives} on the classpath, in classpath order.
      */
     public synchronized Collection<JavaArchive> getAll() {
         if (entries == null) {
@@ -55,13 +67,25 @@ public class Classpath {
                     .peek(entry -> LOG.trace("Classpath entry: {}", entry.getFile()))
                     .filter(url -> UrlUtils.toFile(url).exists())
                     .peek(entry -> LOG.trace("Existing classpath entry: {}", entry))
-                    .map(Classpath::toClasspathEntry)
-                    .collect(Collectors.toSet());
+                    .filter(url -> filter.accept(UrlUtils.toFile(url)))
+                    .map(Classpath::toJavaArchive)
+                    .collect(Collectors.toList());
+            LOG.debug("Using {} classpath entries, skipped {} entries ({} bytes)",
+                    entries.size(), filter.getSkippedArchives(), filter.getSkippedBytes());
         }
         return entries;
     }
 
-    private static JavaArchive toClasspathEntry(final URL url) {
+    /**
+     * Releases the resources held by the {@link JavaArchive java archives} on the classpath.
+     */
+    public synchronized void close() {
+        if (entries != null) {
+            entries.forEach(JavaArchive::close);
+        }
+    }
+
+    static JavaArchive toJavaArchive(final URL url) {
         final File file = UrlUtils.toFile(url);
         if (file.isDirectory()) {
             return new DirectoryJavaArchive(file);
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import fi.testee.config.TestEEfiConfiguration;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Filters classpath entries before they're scanned for bean archives. Thread safe.
+ * <p>
+ * Entries can be included and excluded via comma separated patterns in the configuration keys
+ * <code>testeefi.classpath.include</code> and <code>testeefi.classpath.exclude</code>. Patterns prefixed with
+ * <code>regex:</code> are regular expressions, all others are globs (<code>*</code> matching within a path
+ * segment, <code>**</code> across segments). Patterns containing a <code>/</code> are matched against the
+ * absolute path of the entry, all others against its file name only. When includes are given, only matching
+ * entries are scanned.</p>
+ * <p>
+ * Additionally JARs of well known libraries that can never be bean archives (JDK, logging, build tools, test
+ * frameworks, JDBC drivers, ...) are skipped, unless explicitly included or
+ * <code>testeefi.classpath.skipKnownIrrelevant</code> is set to <code>false</code>.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+public class ClasspathFilter {
+    private static final Logger LOG = LoggerFactory.getLogger(ClasspathFilter.class);
+    static final String INCLUDE = "testeefi.classpath.include";
+    static final String EXCLUDE = "testeefi.classpath.exclude";
+    static final String SKIP_KNOWN_IRRELEVANT = "testeefi.classpath.skipKnownIrrelevant";
+
+    // Artifact names (file name without version or Implementation-Title) of libraries without bean archives
+    private static final Pattern KNOWN_IRRELEVANT = Pattern.compile("^(" + StringUtils.join(Arrays.asList(
+            // IDEs and build tools
+            "idea_rt", "junit-rt", "junit5-rt", "gradle-worker", "surefire-.*",
+            // Logging
+            "slf4j-.*", "logback-.*", "log4j(-.*)?", "commons-logging", "jboss-logging(-.*)?", "jul-to-slf4j",
+            // Common libraries
+            "commons-lang3?", "commons-io", "commons-codec", "commons-collections4?", "guava", "jackson-.*",
+            "groovy(-all)?", "kotlin-stdlib(-.*)?", "scala-library", "byte-buddy(-.*)?", "javassist", "asm(-.*)?",
+            "cglib(-nodep)?", "objenesis", "scannotation", "okhttp", "okio", "jetty-.*", "javax-websocket-.*",
+            "websocket-.*", "javaee-api", "javax\\.inject", "cdi-api", "el-api", "jsr250-api",
+            // Test frameworks
+            "junit", "junit-jupiter-.*", "junit-platform-.*", "junit-vintage-.*", "opentest4j", "apiguardian-api",
+            "hamcrest-.*", "mockito-core", "easymock", "assertj-core", "cucumber-.*", "gherkin.*",
+            // JDBC drivers
+            "h2", "postgresql", "mysql-connector-java", "mariadb-java-client", "ojdbc\\d*", "hsqldb", "derby.*",
+            "sqlite-jdbc", "mssql-jdbc"
+    ), "|") + ")$");
+    private static final Pattern VERSION_SUFFIX = Pattern.compile("-\\d[^/]*$");
+    private static final String JDK_HOME = jdkHome();
+    // Entries of archives that must always be scanned for the framework to work
+    private static final String[] FRAMEWORK_MARKERS = {
+            "META-INF/testee.fi",
+            "org/jboss/weld/bootstrap/WeldExtension.class"
+    };
+
+    private final List<EntryPattern> includes;
+    private final List<EntryPattern> excludes;
+    private final boolean skipKnownIrrelevant;
+    private final AtomicInteger skippedArchives = new AtomicInteger();
+    private final AtomicLong skippedBytes = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param includes            the include patterns.
+     * @param excludes            the exclude patterns.
+     * @param skipKnownIrrelevant whether to skip JARs of well known libraries without bean archives.
+     */
+    public ClasspathFilter(
+            final Collection<String> includes,
+            final Collection<String> excludes,
+            final boolean skipKnownIrrelevant
+    ) {
+        this.includes = includes.stream().map(EntryPattern::new).collect(toList());
+        this.excludes = excludes.stream().map(EntryPattern::new).collect(toList());
+        this.skipKnownIrrelevant = skipKnownIrrelevant;
+    }
+
+    /**
+     * Creates a filter from the {@link TestEEfiConfiguration configuration}.
+     *
+     * @return the filter.
+     */
+    public static ClasspathFilter fromConfiguration() {
+        final TestEEfiConfiguration config = TestEEfiConfiguration.instance();
+        return new ClasspathFilter(
+                config.getList(INCLUDE),
+                config.getList(EXCLUDE),
+                config.getBoolean(SKIP_KNOWN_IRRELEVANT, true)
+        );
+    }
+
+    /**
+     * Checks if a classpath entry should be scanned.
+     *
+     * @param file the JAR file or directory of the classpath entry.
+     * @return <code>true</code> if the entry should be scanned.
+     */
+    public boolean accept(final File file) {
+        final String path = file.getAbsolutePath().replace(File.separatorChar, '/');
+        final String reason = skipReason(path, file);
+        if (reason == null) {
+            return true;
+        }
+        LOG.trace("Skipping classpath entry {}: {}", path, reason);
+        skippedArchives.incrementAndGet();
+        if (file.isFile()) {
+            skippedBytes.addAndGet(file.length());
+        }
+        return false;
+    }
+
+    private String skipReason(final String path, final File file) {
+        final boolean included = matchesAny(includes, path, file.getName());
+        if (!includes.isEmpty() && !included && !isFrameworkArchive(file)) {
+            return "not included";
+        }
+        if (matchesAny(excludes, path, file.getName()) && !isFrameworkArchive(file)) {
+            return "excluded";
+        }
+        if (skipKnownIrrelevant
+                && !included
+                && file.isFile()
+                && isKnownIrrelevant(path, file)
+                && !isFrameworkArchive(file)) {
+            return "known to be irrelevant";
+        }
+        return null;
+    }
+
+    /**
+     * The number of classpath entries skipped so far.
+     *
+     * @return the number of skipped entries.
+     */
+    public int getSkippedArchives() {
+        return skippedArchives.get();
+    }
+
+    /**
+     * The accumulated size of the JAR files skipped so far.
+     *
+     * @return the size in bytes.
+     */
+    public long getSkippedBytes() {
+        return skippedBytes.get();
+    }
+
+    private static boolean matchesAny(final List<EntryPattern> patterns, final String path, final String name) {
+        return patterns.stream().anyMatch(it -> it.matches(path, name));
+    }
+
+    static boolean isKnownIrrelevant(final String path, final File jar) {
+        if (JDK_HOME != null && path.startsWith(JDK_HOME)) {
+            return true;
+        }
+        final String artifact = VERSION_SUFFIX.matcher(StringUtils.removeEnd(jar.getName(), ".jar")).replaceFirst("");
+        if (KNOWN_IRRELEVANT.matcher(artifact).matches()) {
+            return true;
+        }
+        final String title = implementationTitle(jar);
+        return title != null && KNOWN_IRRELEVANT.matcher(title).matches();
+    }
+
+    private static boolean isFrameworkArchive(final File file) {
+        if (file.isDirectory()) {
+            return Arrays.stream(FRAMEWORK_MARKERS).anyMatch(it -> new File(file, it).exists());
+        }
+        try (final JarFile jarFile = new JarFile(file)) {
+            return Arrays.stream(FRAMEWORK_MARKERS).anyMatch(it -> jarFile.getEntry(it) != null);
+        } catch (final IOException e) {
+            LOG.trace("Failed to open {}", file, e);
+            return false;
+        }
+    }
+
+    private static String jdkHome() {
+        final String javaHome = System.getProperty("java.home");
+        if (StringUtils.isBlank(javaHome)) {
+            return null;
+        }
+        final File home = new File(javaHome).getAbsoluteFile();
+        // JDK 8 has its runtime in a "jre" subdirectory, but ships JARs like tools.jar in the JDK's lib folder
+        final File jdk = "jre".equals(home.getName()) ? home.getParentFile() : home;
+        return jdk.getAbsolutePath().replace(File.separatorChar, '/') + "/";
+    }
+
+    private static String implementationTitle(final File jar) {
+        try (final JarFile jarFile = new JarFile(jar)) {
+            final Manifest manifest = jarFile.getManifest();
+            return manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.IMPLEMENTATION_TITLE);
+        } catch (final IOException e) {
+            LOG.trace("Failed to read manifest of {}", jar, e);
+            return null;
+        }
+    }
+
+    private static Pattern compile(final String pattern) {
+        if (pattern.startsWith("regex:")) {
+            return Pattern.compile(pattern.substring("regex:".length()));
+        }
+        return Pattern.compile(globToRegex(StringUtils.removeStart(pattern, "glob:")));
+    }
+
+    private static String globToRegex(final String glob) {
+        final StringBuilder ret = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                ret.append(".*");
+                i++;
+            } else if (c == '*') {
+                ret.append("[^/]*");
+            } else if (c == '?') {
+                ret.append("[^/]");
+            } else {
+                ret.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return ret.toString();
+    }
+
+    private static final class EntryPattern {
+        private final Pattern pattern;
+        private final boolean matchPath;
+
+        EntryPattern(final String pattern) {
+            this.pattern = compile(pattern);
+            this.matchPath = pattern.contains("/");
+        }
+
+        boolean matches(final String path, final String name) {
+            return pattern.matcher(matchPath ? path : name).matches();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import fi.testee.config.TestEEfiConfiguration;
+import fi.testee.exceptions.TestEEfiException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Persistent on-disk cache of {@link ArchiveSummary archive summaries}, shared across JVMs. Thread safe.
+ * <p>
+ * Entries are keyed by the canonical path of the archive and validated against a fingerprint (size and
+ * modification time for JAR files, a hash over all contained files' paths, sizes and modification times for
+ * directories). Entries are written to a temporary file first and then atomically moved into place, so
+ * concurrently running test JVMs can safely share a cache directory.</p>
+ * <p>
+ * The cache is disabled by default and enabled by setting the {@link TestEEfiConfiguration configuration}
+ * value <code>testeefi.classpath.indexCache</code> either to a directory or to <code>true</code> for using
+ * <code>~/.testeefi/index</code>.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class ClasspathIndexCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ClasspathIndexCache.class);
+    static final String CACHE_DIR_PROPERTY = "testeefi.classpath.indexCache";
+    private static final int MAGIC = 0x7e57eef1;
+    private static final int FORMAT_VERSION = 3;
+    private static final ClasspathIndexCache INSTANCE = fromConfiguration();
+
+    private final File directory;
+
+    /**
+     * Constructor.
+     *
+     * @param directory the cache directory or <code>null</code> for disabling the cache.
+     */
+    ClasspathIndexCache(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The cache as configured via the {@link TestEEfiConfiguration configuration}.
+     *
+     * @return the cache.
+     */
+    static ClasspathIndexCache instance() {
+        return INSTANCE;
+    }
+
+    private static ClasspathIndexCache fromConfiguration() {
+        final String value = TestEEfiConfiguration.instance().get(CACHE_DIR_PROPERTY);
+        if (StringUtils.isBlank(value) || "false".equalsIgnoreCase(value)) {
+            return new ClasspathIndexCache(null);
+        }
+        if ("true".equalsIgnoreCase(value)) {
+            return new ClasspathIndexCache(new File(System.getProperty("user.home"), ".testeefi/index"));
+        }
+        return new ClasspathIndexCache(new File(value));
+    }
+
+    /**
+     * Returns the summary of the archive located at the given file, either from the cache or by invoking
+     * the factory and storing the result in the cache.
+     *
+     * @param root    the JAR file or directory of the archive.
+     * @param factory the factory for creating the summary if it's not cached, yet.
+     * @return the summary.
+     */
+    ArchiveSummary get(final File root, final Supplier<ArchiveSummary> factory) {
+        if (directory == null || !root.exists()) {
+            return factory.get();
+        }
+        final String fingerprint;
+        final File entry;
+        try {
+            final String path = root.getCanonicalPath();
+            fingerprint = fingerprint(root);
+            entry = new File(directory, sha1(path) + ".idx");
+        } catch (final IOException e) {
+            LOG.debug("Failed to fingerprint {}, not using index cache", root, e);
+            return factory.get();
+        }
+        final ArchiveSummary cached = read(entry, fingerprint);
+        if (cached != null) {
+            LOG.trace("Using cached summary for {}", root);
+            return cached;
+        }
+        final ArchiveSummary ret = factory.get();
+        write(entry, fingerprint, ret);
+        return ret;
+    }
+
+    private static ArchiveSummary read(final File entry, final String fingerprint) {
+        if (!entry.isFile()) {
+            return null;
+        }
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !fingerprint.equals(in.readUTF())) {
+                return null;
+            }
+            final Collection<String> classes = readStrings(in, new HashSet<>());
+            final int annotationCount = in.readInt();
+            final Map<String, Set<String>> annotationIndex = new HashMap<>(annotationCount * 2);
+            for (int i = 0; i < annotationCount; i++) {
+                annotationIndex.put(in.readUTF(), readStrings(in, new HashSet<>()));
+            }
+            final int resourceCount = in.readInt();
+            final Map<String, byte[]> resources = new HashMap<>();
+            for (int i = 0; i < resourceCount; i++) {
+                final String name = in.readUTF();
+                final byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                resources.put(name, data);
+            }
+            return new ArchiveSummary(classes, annotationIndex, resources);
+        } catch (final IOException e) {
+            LOG.debug("Ignoring unreadable index cache entry {}", entry, e);
+            return null;
+        }
+    }
+
+    private void write(final File entry, final String fingerprint, final ArchiveSummary summary) {
+        Path tmp = null;
+        try {
+            Files.createDirectories(directory.toPath());
+            tmp = Files.createTempFile(directory.toPath(), entry.getName(), ".tmp");
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(fingerprint);
+                writeStrings(out, summary.getClasses());
+                out.writeInt(summary.getAnnotationIndex().size());
+                for (final Map.Entry<String, Set<String>> annotation : summary.getAnnotationIndex().entrySet()) {
+                    out.writeUTF(annotation.getKey());
+                    writeStrings(out, annotation.getValue());
+                }
+                out.writeInt(summary.getResources().size());
+                for (final Map.Entry<String, byte[]> resource : summary.getResources().entrySet()) {
+                    out.writeUTF(resource.getKey());
+                    out.writeInt(resource.getValue().length);
+                    out.write(resource.getValue());
+                }
+            }
+            move(tmp, entry.toPath());
+        } catch (final IOException e) {
+            LOG.debug("Failed to write index cache entry {}", entry, e);
+            deleteQuietly(tmp);
+        }
+    }
+
+    private static void move(final Path from, final Path to) throws IOException {
+        try {
+            Files.move(from, to, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(from, to, REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteQuietly(final Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (final IOException e) {
+            LOG.trace("Failed to delete {}", path, e);
+        }
+    }
+
+    private static <T extends Collection<String>> T readStrings(final DataInputStream in, final T target) throws IOException {
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            target.add(in.readUTF());
+        }
+        return target;
+    }
+
+    private static void writeStrings(final DataOutputStream out, final Collection<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (final String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static String fingerprint(final File root) throws IOException {
+        if (root.isFile()) {
+            return "jar:" + root.length() + ":" + root.lastModified();
+        }
+        final List<String> entries = new ArrayList<>();
+        final Path rootPath = root.toPath();
+        Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                entries.add(rootPath.relativize(file) + ":" + attrs.size() + ":" + attrs.lastModifiedTime().toMillis());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(entries);
+        return "dir:" + sha1(StringUtils.join(entries, "\n"));
+    }
+
+    private static String sha1(final String s) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(s.getBytes(StandardCharsets.UTF_8));
+            return String.format("%040x", new BigInteger(1, digest));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new TestEEfiException("JRE doesn't know SHA-1", e);
+        }
+    }
+}
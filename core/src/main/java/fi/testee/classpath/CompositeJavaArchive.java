@@ -16,14 +16,17 @@
 package fi.testee.classpath;
 
 import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
 import java.net.URL;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.stream.Collectors;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import static fi.testee.utils.UrlUtils.createCompositeUrl;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toSet;
 
 /**
  * A {@link JavaArchive} merging multiple delegate archives to one.
@@ -33,6 +36,8 @@ import static java.util.stream.Collectors.toSet;
 public class CompositeJavaArchive implements JavaArchive {
     private final Collection<JavaArchive> archives;
     private final URL url;
+    private final AnnotationScanner annotationScanner;
+    private SoftReference<ArchiveSummary> summary = new SoftReference<>(null);
 
     /**
      * Constructor.
@@ -45,6 +50,7 @@ public class CompositeJavaArchive implements JavaArchive {
                 .map(JavaArchive::getURL)
                 .collect(toList())
         );
+        this.annotationScanner = new AnnotationScanner(() -> getSummary().getAnnotationIndex());
     }
 
 
@@ -66,12 +72,54 @@ public class CompositeJavaArchive implements JavaArchive {
 
     @Override
     public Collection<String> getClasses() {
-        return archives.stream().map(JavaArchive::getClasses).flatMap(Collection::stream).collect(Collectors.toSet());
+        return getSummary().getClasses();
     }
 
     @Override
-    public Collection<Class<?>> annotatedWith(Class<? extends Annotation>[] annotations) {
-        return archives.stream().map(it -> it.annotatedWith(annotations)).flatMap(Collection::stream).collect(toSet());
+    public synchronized ArchiveSummary getSummary() {
+        ArchiveSummary ret = summary.get();
+        if (ret == null) {
+            final Set<String> classes = new HashSet<>();
+            final Map<String, Set<String>> annotationIndex = new HashMap<>();
+            final Map<String, byte[]> resources = new HashMap<>();
+            archives.stream().map(JavaArchive::getSummary).forEach(it -> {
+                classes.addAll(it.getClasses());
+                it.getAnnotationIndex().forEach((annotation, annotated) -> annotationIndex
+                        .computeIfAbsent(annotation, k -> new HashSet<>())
+                        .addAll(annotated));
+                // Same precedence as findResource()
+                it.getResources().forEach(resources::putIfAbsent);
+            });
+            ret = new ArchiveSummary(classes, annotationIndex, resources);
+            // Can be rebuilt from the delegates' summaries, so it may be evicted under memory pressure
+            summary = new SoftReference<>(ret);
+        }
+        return ret;
+    }
+
+    @Override
+    public Collection<ArchiveStatistics> getStatistics() {
+        return archives.stream().map(JavaArchive::getStatistics).flatMap(Collection::stream).collect(toList());
+    }
+
+    @Override
+    public Collection<Class<?>> annotatedWith(final Class<? extends Annotation>[] annotations) {
+        return annotationScanner.scanFor(annotations);
+    }
+
+    @Override
+    public Collection<String> classNamesAnnotatedWith(final Class<? extends Annotation>[] annotations) {
+        return annotationScanner.classNamesAnnotatedWith(annotations);
+    }
+
+    @Override
+    public boolean anyAnnotatedWith(final Class<? extends Annotation>[] annotations) {
+        return annotationScanner.anyAnnotatedWith(annotations);
+    }
+
+    @Override
+    public void close() {
+        archives.forEach(JavaArchive::close);
     }
 
     @Override
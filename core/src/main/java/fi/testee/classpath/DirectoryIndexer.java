@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import fi.testee.config.TestEEfiConfiguration;
+import fi.testee.exceptions.TestEEfiException;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the index of relative paths of all regular files in a directory tree. Thread safe.
+ * <p>
+ * By default the tree is walked sequentially. Setting the {@link TestEEfiConfiguration configuration} value
+ * <code>testeefi.classpath.walkerThreads</code> to a value greater than one walks large trees in parallel
+ * on a dedicated pool bounded to the given number of threads. The pool is created on first use and lives as
+ * long as the JVM, its threads are daemon threads that don't keep the JVM from exiting.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class DirectoryIndexer {
+    static final String WALKER_THREADS_PROPERTY = "testeefi.classpath.walkerThreads";
+    private static final int WALKER_THREADS = TestEEfiConfiguration.instance().getInt(WALKER_THREADS_PROPERTY, 1);
+    private static ForkJoinPool pool;
+
+    private DirectoryIndexer() {
+    }
+
+    /**
+     * Indexes a directory tree.
+     *
+     * @param root the root of the tree.
+     * @return the sorted relative paths of all regular files, using <code>/</code> as separator.
+     */
+    static List<String> index(final Path root) {
+        return index(root, WALKER_THREADS > 1);
+    }
+
+    static List<String> index(final Path root, final boolean parallel) {
+        if (!Files.isDirectory(root)) {
+            return Collections.emptyList();
+        }
+        final List<String> ret = parallel ? pool().invoke(new WalkTask(root, root)) : walk(root);
+        Collections.sort(ret);
+        return ret;
+    }
+
+    private static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Math.max(WALKER_THREADS, 1), new WalkerThreadFactory(), null, false);
+        }
+        return pool;
+    }
+
+    private static List<String> walk(final Path root) {
+        final List<String> ret = new ArrayList<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        ret.add(relative(root, file));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException e) {
+            throw new TestEEfiException("Error iterating classpath directory " + root, e);
+        }
+        return ret;
+    }
+
+    private static String relative(final Path root, final Path file) {
+        return root.relativize(file).toString().replace(root.getFileSystem().getSeparator(), "/");
+    }
+
+    private static class WalkTask extends RecursiveTask<List<String>> {
+        private final Path root;
+        private final Path dir;
+
+        WalkTask(final Path root, final Path dir) {
+            this.root = root;
+            this.dir = dir;
+        }
+
+        @Override
+        protected List<String> compute() {
+            final List<String> ret = new ArrayList<>();
+            final List<WalkTask> children = new ArrayList<>();
+            try (final DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (final Path child : stream) {
+                    if (Files.isDirectory(child)) {
+                        final WalkTask task = new WalkTask(root, child);
+                        task.fork();
+                        children.add(task);
+                    } else if (Files.isRegularFile(child)) {
+                        ret.add(relative(root, child));
+                    }
+                }
+            } catch (final IOException e) {
+                throw new TestEEfiException("Error iterating classpath directory " + dir, e);
+            }
+            children.forEach(it -> ret.addAll(it.join()));
+            return ret;
+        }
+    }
+
+    private static final class WalkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+            final ForkJoinWorkerThread ret = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            ret.setName("testeefi-walker-" + count.getAndIncrement());
+            ret.setDaemon(true);
+            return ret;
+        }
+    }
+}
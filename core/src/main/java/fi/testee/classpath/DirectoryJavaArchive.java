@@ -15,26 +15,24 @@
  */
 package fi.testee.classpath;
 
-import fi.testee.exceptions.TestEEfiException;
-import org.apache.commons.lang3.StringUtils;
-
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 import static fi.testee.utils.UrlUtils.toUrl;
-import static java.util.Collections.emptyList;
 
 /**
- * A directory based {@link JavaArchive}.
+ * A directory based {@link JavaArchive}. The paths of the contained files are indexed for analyzing the
+ * archive, resources are looked up directly in the file system.
  *
  * @author Alex Stockinger, IT-Stockinger
  */
 public class DirectoryJavaArchive extends AbstractBaseJavaArchive {
-    private File file;
+    private final File file;
+    private final Path root;
 
     /**
      * Constructor.
@@ -42,49 +40,47 @@ public class DirectoryJavaArchive extends AbstractBaseJavaArchive {
      * @param file the directory.
      */
     public DirectoryJavaArchive(final File file) {
-        super(toUrl(file));
         this.file = file;
+        this.root = file.toPath();
     }
 
     @Override
-    public URL getURL() {
-        return toUrl(file);
+    protected InputStreamSupplier open(final String name) {
+        return () -> Files.newInputStream(root.resolve(name));
     }
 
     @Override
-    protected <T> T iterate(final Callback<T> cb) {
-        return iterate(emptyList(), file, cb);
+    protected long lastModified(final String name) {
+        return root.resolve(name).toFile().lastModified();
     }
 
-    private static <T> T iterate(final List<String> prefix, final File file, final Callback<T> cb) {
-        try {
-            final T result = cb.item(() -> new FileInputStream(file), StringUtils.join(prefix, "/") + "/" + file.getName());
-            if (result != null) {
-                return result;
-            }
-            for (final File child : file.listFiles()) {
-                if (child.isDirectory()) {
-                    final T childResult = iterate(prefix(prefix, child.getName()), child, cb);
-                    if (childResult != null) {
-                        return childResult;
-                    }
-                } else {
-                    final T childResult = cb.item(() -> new FileInputStream(child), StringUtils.join(prefix, "/") + "/" + child.getName());
-                    if (childResult != null) {
-                        return childResult;
-                    }
-                }
-            }
-        } catch (final IOException e) {
-            throw new TestEEfiException("Error iterating classpath", e);
+    @Override
+    protected ClasspathResource lookup(final String s) {
+        final Path path = root.resolve(s);
+        if (!Files.isRegularFile(path)) {
+            return null;
         }
-        return null;
+        return new ClasspathResource(() -> Files.newInputStream(path));
+    }
+
+    @Override
+    protected List<String> entries() {
+        return DirectoryIndexer.index(root);
+    }
+
+    @Override
+    protected File getRoot() {
+        return file;
+    }
+
+    @Override
+    public URL getURL() {
+        return toUrl(file);
     }
 
-    private static List<String> prefix(final List<String> prefix, final String name) {
-        final List<String> ret = new ArrayList<>(prefix);
-        ret.add(name);
-        return ret;
+    @Override
+    public void close() {
+        // Nothing to be done here
     }
 
     @Override
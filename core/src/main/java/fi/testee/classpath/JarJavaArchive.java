@@ -16,23 +16,30 @@
 package fi.testee.classpath;
 
 import fi.testee.exceptions.TestEEfiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 import static fi.testee.utils.UrlUtils.toUrl;
 
 /**
- * JAR-file based {@link JavaArchive}.
+ * JAR-file based {@link JavaArchive}. Resources are looked up via the central directory of the JAR file, which
+ * is kept open until the archive is {@link #close() closed}.
  *
  * @author Alex Stockinger, IT-Stockinger
  */
 public class JarJavaArchive extends AbstractBaseJavaArchive {
+    private static final Logger LOG = LoggerFactory.getLogger(JarJavaArchive.class);
     private final File file;
+    private ZipFile zipFile;
 
     /**
      * Constructor.
@@ -40,35 +47,76 @@ public class JarJavaArchive extends AbstractBaseJavaArchive {
      * @param file the JAR file.
      */
     public JarJavaArchive(final File file) {
-        super(toUrl(file));
         this.file = file;
     }
 
-    protected <T> T iterate(final Callback<T> cb) {
-        try (final ZipInputStream zis = new ZipInputStream(new FileInputStream(file))) {
-            ZipEntry entry = zis.getNextEntry();
-            while (entry != null) {
-                final T ret = cb.item(streamProvider(entry), entry.getName());
-                if (ret != null) {
-                    return ret;
-                }
-                entry = zis.getNextEntry();
+    @Override
+    protected List<String> entries() {
+        final List<String> ret = new ArrayList<>();
+        final Enumeration<? extends ZipEntry> zipEntries = zipFile().entries();
+        while (zipEntries.hasMoreElements()) {
+            final ZipEntry entry = zipEntries.nextElement();
+            if (!entry.isDirectory()) {
+                ret.add(entry.getName());
             }
+        }
+        return ret;
+    }
+
+    @Override
+    protected InputStreamSupplier open(final String name) {
+        return streamProvider(name);
+    }
+
+    @Override
+    protected ClasspathResource lookup(final String s) {
+        final ZipEntry entry = zipFile().getEntry(s);
+        if (entry == null || entry.isDirectory()) {
             return null;
-        } catch (final IOException e) {
-            throw new TestEEfiException("Could not read JAR file " + file.getAbsolutePath(), e);
         }
+        return new ClasspathResource(streamProvider(s));
     }
 
-    private InputStreamSupplier streamProvider(final ZipEntry needle) {
+    private InputStreamSupplier streamProvider(final String name) {
         return () -> {
-            final ZipInputStream zis = new ZipInputStream(new FileInputStream(file));
-            while (!zis.getNextEntry().getName().equals(needle.getName())) {
+            final ZipFile zip = zipFile();
+            final ZipEntry entry = zip.getEntry(name);
+            if (entry == null) {
+                throw new IOException("Entry " + name + " disappeared from " + file.getAbsolutePath());
             }
-            return zis;
+            return zip.getInputStream(entry);
         };
     }
 
+    private synchronized ZipFile zipFile() {
+        if (zipFile == null) {
+            try {
+                zipFile = new ZipFile(file);
+            } catch (final IOException e) {
+                throw new TestEEfiException("Could not open JAR file " + file.getAbsolutePath(), e);
+            }
+        }
+        return zipFile;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (zipFile == null) {
+            return;
+        }
+        try {
+            zipFile.close();
+        } catch (final IOException e) {
+            LOG.debug("Failed to close JAR file {}", file, e);
+        }
+        zipFile = null;
+    }
+
+    @Override
+    protected File getRoot() {
+        return file;
+    }
+
     @Override
     public URL getURL() {
         return toUrl(file);
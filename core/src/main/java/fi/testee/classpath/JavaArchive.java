@@ -15,6 +15,7 @@
  */
 package fi.testee.classpath;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
@@ -26,7 +27,7 @@ import java.util.Collection;
  *
  * @author Alex Stockinger, IT-Stockinger
  */
-public interface JavaArchive {
+public interface JavaArchive extends Closeable {
     /**
      * Finds a resource in the classpath entry.
      *
@@ -49,8 +50,53 @@ public interface JavaArchive {
      */
     Collection<String> getClasses();
 
+    /**
+     * Returns the {@link ArchiveSummary summary} of the java archive, analyzing the archive if necessary.
+     *
+     * @return the summary.
+     */
+    ArchiveSummary getSummary();
+
+    /**
+     * Returns the {@link ArchiveStatistics statistics} about obtaining the summaries of the underlying
+     * archives.
+     *
+     * @return the statistics, empty if the summary wasn't obtained, yet.
+     */
+    Collection<ArchiveStatistics> getStatistics();
+
+    /**
+     * Returns the classes annotated with any of the given annotations, loading them if necessary.
+     *
+     * @param annotations the annotations to look for.
+     * @return the annotated classes.
+     */
     Collection<Class<?>> annotatedWith(Class<? extends Annotation>... annotations);
 
+    /**
+     * Returns the names of the classes annotated with any of the given annotations without loading them.
+     *
+     * @param annotations the annotations to look for.
+     * @return the names of the annotated classes.
+     */
+    Collection<String> classNamesAnnotatedWith(Class<? extends Annotation>... annotations);
+
+    /**
+     * Checks if the java archive contains at least one class annotated with any of the given annotations,
+     * without loading any classes.
+     *
+     * @param annotations the annotations to look for.
+     * @return <code>true</code> if at least one annotated class exists.
+     */
+    boolean anyAnnotatedWith(Class<? extends Annotation>... annotations);
+
+    /**
+     * Releases resources (like open file handles) held by the java archive. The archive remains usable and
+     * reacquires the resources on demand.
+     */
+    @Override
+    void close();
+
     interface InputStreamSupplier {
         InputStream get() throws IOException;
     }
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.config;
+
+import fi.testee.exceptions.TestEEfiException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static java.util.Arrays.asList;
+import static java.util.Arrays.stream;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Configuration of TestEE.fi. Thread safe.
+ * <p>
+ * Values are read from the file <code>testeefi.properties</code> in the root of the classpath. System
+ * properties with the same keys take precedence over the file.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+public final class TestEEfiConfiguration {
+    private static final Logger LOG = LoggerFactory.getLogger(TestEEfiConfiguration.class);
+    /**
+     * The name of the configuration file.
+     */
+    public static final String FILENAME = "testeefi.properties";
+    private static final TestEEfiConfiguration INSTANCE = new TestEEfiConfiguration(
+            load(TestEEfiConfiguration.class.getClassLoader()),
+            System.getProperties()
+    );
+
+    private final Properties file;
+    private final Properties system;
+
+    /**
+     * Constructor.
+     *
+     * @param file   the properties from the configuration file.
+     * @param system the properties overriding the configuration file.
+     */
+    TestEEfiConfiguration(final Properties file, final Properties system) {
+        this.file = file;
+        this.system = system;
+    }
+
+    /**
+     * The configuration as found on the classpath and in the system properties.
+     *
+     * @return the configuration.
+     */
+    public static TestEEfiConfiguration instance() {
+        return INSTANCE;
+    }
+
+    private static Properties load(final ClassLoader classLoader) {
+        final Properties ret = new Properties();
+        try (final InputStream is = classLoader.getResourceAsStream(FILENAME)) {
+            if (is != null) {
+                ret.load(is);
+                LOG.debug("Loaded {}: {}", FILENAME, ret);
+            }
+        } catch (final IOException e) {
+            throw new TestEEfiException("Failed to read " + FILENAME, e);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a configuration value.
+     *
+     * @param key the key of the value.
+     * @return the value or <code>null</code> if not configured.
+     */
+    public String get(final String key) {
+        final String ret = system.getProperty(key);
+        return ret != null ? ret : file.getProperty(key);
+    }
+
+    /**
+     * Returns a configuration value.
+     *
+     * @param key          the key of the value.
+     * @param defaultValue the value to use if not configured.
+     * @return the value.
+     */
+    public String get(final String key, final String defaultValue) {
+        final String ret = get(key);
+        return StringUtils.isBlank(ret) ? defaultValue : ret.trim();
+    }
+
+    /**
+     * Returns a boolean configuration value.
+     *
+     * @param key          the key of the value.
+     * @param defaultValue the value to use if not configured.
+     * @return the value.
+     */
+    public boolean getBoolean(final String key, final boolean defaultValue) {
+        final String ret = get(key);
+        return StringUtils.isBlank(ret) ? defaultValue : Boolean.parseBoolean(ret.trim());
+    }
+
+    /**
+     * Returns an integer configuration value.
+     *
+     * @param key          the key of the value.
+     * @param defaultValue the value to use if not configured.
+     * @return the value.
+     */
+    public int getInt(final String key, final int defaultValue) {
+        final String ret = get(key);
+        if (StringUtils.isBlank(ret)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(ret.trim());
+        } catch (final NumberFormatException e) {
+            throw new TestEEfiException("Invalid integer value for " + key + ": " + ret, e);
+        }
+    }
+
+    /**
+     * Returns all configuration values with keys starting with a prefix.
+     *
+     * @param prefix the prefix of the keys.
+     * @return the trimmed values by their full keys, sorted by key.
+     */
+    public Map<String, String> getAll(final String prefix) {
+        final Map<String, String> ret = new TreeMap<>();
+        // System properties last, so they take precedence
+        for (final Properties properties : asList(file, system)) {
+            properties.stringPropertyNames().stream()
+                    .filter(it -> it.startsWith(prefix))
+                    .forEach(it -> ret.put(it, properties.getProperty(it).trim()));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a comma separated list configuration value.
+     *
+     * @param key the key of the value.
+     * @return the trimmed, non-empty elements of the list.
+     */
+    public List<String> getList(final String key) {
+        final String ret = get(key);
+        if (StringUtils.isBlank(ret)) {
+            return Collections.emptyList();
+        }
+        return stream(ret.split(","))
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .collect(toList());
+    }
+}
@@ -15,18 +15,42 @@
  */
 package fi.testee.deployment;
 
+import fi.testee.classpath.ClassHeader;
+import fi.testee.classpath.ClasspathResource;
 import fi.testee.classpath.JavaArchive;
+import fi.testee.config.TestEEfiConfiguration;
+import fi.testee.exceptions.TestEEfiException;
+import org.jboss.weld.bootstrap.spi.BeanDiscoveryMode;
+import org.jboss.weld.bootstrap.spi.BeansXml;
 
+import javax.decorator.Decorator;
 import javax.ejb.MessageDriven;
 import javax.ejb.Singleton;
 import javax.ejb.Stateful;
 import javax.ejb.Stateless;
+import javax.enterprise.context.Dependent;
+import javax.enterprise.context.NormalScope;
+import javax.enterprise.inject.Stereotype;
+import javax.interceptor.Interceptor;
 import javax.persistence.Entity;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.nio.ByteBuffer;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.toSet;
+import static org.jboss.weld.bootstrap.spi.BeansXml.EMPTY_BEANS_XML;
+
 public class BeanArchive {
+    static final String IMPLICIT_ARCHIVES = "testeefi.discovery.implicitArchives";
     public static final Class[] EJB_ANNOTATIONS = {
             Singleton.class,
             Stateless.class,
@@ -34,9 +58,23 @@ public class BeanArchive {
             Entity.class,
             MessageDriven.class
     };
+    // Bean defining annotations besides normal scopes and stereotypes, including the EJB component types
+    private static final Set<String> BEAN_DEFINING_ANNOTATIONS = new HashSet<>(asList(
+            Dependent.class.getName(),
+            Interceptor.class.getName(),
+            Decorator.class.getName(),
+            Singleton.class.getName(),
+            Stateless.class.getName(),
+            Stateful.class.getName(),
+            MessageDriven.class.getName()
+    ));
+    private static final Map<String, Boolean> BEAN_DEFINING_CACHE = new ConcurrentHashMap<>();
     private final JavaArchive classpathEntry;
     private final Collection<Class<? extends Annotation>> qualifyingAnnotations;
     private Collection<EjbDescriptorImpl<?>> ejbs;
+    private Collection<String> annotatedBeanClasses;
+    private BeansXml beansXml;
+    private Collection<String> deployedBeanClasses;
 
     @SuppressWarnings("unchecked")
     public BeanArchive(
@@ -52,10 +90,135 @@ public class BeanArchive {
         return new EjbDescriptorImpl<>(clazz);
     }
 
+    /**
+     * Returns all classes of the archive, i.e. the bean classes in bean discovery mode <code>all</code>.
+     *
+     * @return the fully qualified names of the classes.
+     */
     public Collection<String> getBeanClasses() {
         return classpathEntry.getClasses();
     }
 
+    /**
+     * Returns the classes of the archive with a bean defining annotation (a normal scope, a stereotype,
+     * <code>@Dependent</code>, <code>@Interceptor</code>, <code>@Decorator</code> or an EJB component
+     * type) on the class itself, i.e. the bean classes in bean discovery mode <code>annotated</code>. No
+     * classes of the archive are loaded: the annotation index of the archive, which also contains annotations
+     * of members like producer methods, yields the candidates, whose class level annotations are then read
+     * from their class files.
+     *
+     * @return the fully qualified names of the classes.
+     */
+    public synchronized Collection<String> getAnnotatedBeanClasses() {
+        if (annotatedBeanClasses == null) {
+            final Set<String> candidates = new HashSet<>();
+            classpathEntry.getSummary().getAnnotationIndex().forEach((annotation, classes) -> {
+                if (isBeanDefining(annotation)) {
+                    candidates.addAll(classes);
+                }
+            });
+            candidates.retainAll(classpathEntry.getClasses());
+            annotatedBeanClasses = candidates.stream()
+                    .filter(this::hasBeanDefiningClassAnnotation)
+                    .collect(collectingAndThen(toSet(), Collections::unmodifiableSet));
+        }
+        return annotatedBeanClasses;
+    }
+
+    private boolean hasBeanDefiningClassAnnotation(final String className) {
+        final ClasspathResource resource = classpathEntry.findResource(className.replace('.', '/') + ".class");
+        if (resource == null) {
+            throw new TestEEfiException("Class file of " + className + " not found in " + classpathEntry.getURL());
+        }
+        try {
+            return ClassHeader.read(ByteBuffer.wrap(resource.getBytes())).getDeclaredAnnotations().stream()
+                    .anyMatch(BeanArchive::isBeanDefining);
+        } catch (final IOException e) {
+            throw new TestEEfiException("Failed to read class file of " + className, e);
+        }
+    }
+
+    /**
+     * Returns the classes of the archive to deploy to Weld, honoring the bean discovery mode and the scan
+     * excludes of the {@link #getBeansXml() beans.xml}. Computed only once, so all deployments of the archive
+     * share the result.
+     *
+     * @return the fully qualified names of the classes.
+     */
+    public synchronized Collection<String> getDeployedBeanClasses() {
+        if (deployedBeanClasses == null) {
+            deployedBeanClasses = computeDeployedBeanClasses();
+        }
+        return deployedBeanClasses;
+    }
+
+    private Collection<String> computeDeployedBeanClasses() {
+        final Collection<String> candidates;
+        switch (getBeanDiscoveryMode()) {
+            case NONE:
+                return Collections.emptySet();
+            case ANNOTATED:
+                candidates = getAnnotatedBeanClasses();
+                break;
+            default:
+                candidates = getBeanClasses();
+        }
+        final ScanExcludes excludes = ScanExcludes.of(getBeansXml(), BeanArchive.class.getClassLoader());
+        if (excludes.isEmpty()) {
+            return candidates;
+        }
+        return candidates.stream()
+                .filter(excludes.negate())
+                .collect(collectingAndThen(toSet(), Collections::unmodifiableSet));
+    }
+
+    private BeanDiscoveryMode getBeanDiscoveryMode() {
+        if (hasBeansXml() || isFrameworkRelevant()) {
+            final BeanDiscoveryMode ret = getBeansXml().getBeanDiscoveryMode();
+            return ret == null ? BeanDiscoveryMode.ALL : ret;
+        }
+        return "annotated".equalsIgnoreCase(TestEEfiConfiguration.instance().get(IMPLICIT_ARCHIVES, "all"))
+                ? BeanDiscoveryMode.ANNOTATED
+                : BeanDiscoveryMode.ALL;
+    }
+
+    private static boolean isBeanDefining(final String annotation) {
+        return BEAN_DEFINING_ANNOTATIONS.contains(annotation)
+                || BEAN_DEFINING_CACHE.computeIfAbsent(annotation, BeanArchive::isScopeOrStereotype);
+    }
+
+    private static boolean isScopeOrStereotype(final String annotation) {
+        try {
+            final Class<?> clazz = Class.forName(annotation, false, BeanArchive.class.getClassLoader());
+            return clazz.isAnnotationPresent(NormalScope.class) || clazz.isAnnotationPresent(Stereotype.class);
+        } catch (final ClassNotFoundException | LinkageError e) {
+            // Annotations missing at runtime are ignored by the JVM as well
+            return false;
+        }
+    }
+
+    /**
+     * Returns the parsed <code>META-INF/beans.xml</code> of the archive. The file is parsed only once, so all
+     * deployments of the archive share the result.
+     *
+     * @return the <code>beans.xml</code>, {@link BeansXml#EMPTY_BEANS_XML} if the archive has none.
+     */
+    public synchronized BeansXml getBeansXml() {
+        if (beansXml == null) {
+            final ClasspathResource resource = classpathEntry.getSummary().getResource("META-INF/beans.xml");
+            beansXml = resource == null ? EMPTY_BEANS_XML : parse(resource);
+        }
+        return beansXml;
+    }
+
+    private BeansXml parse(final ClasspathResource resource) {
+        try {
+            return BeansXmlParser.parse(classpathEntry.getURL(), resource.getBytes());
+        } catch (final IOException e) {
+            throw new TestEEfiException("Failed to read META-INF/beans.xml in " + classpathEntry.getURL(), e);
+        }
+    }
+
     public synchronized Collection<EjbDescriptorImpl<?>> getEjbs() {
         if (ejbs == null) {
             ejbs = classpathEntry.annotatedWith(Singleton.class, Stateless.class, Stateful.class).stream()
@@ -66,7 +229,7 @@ public class BeanArchive {
     }
 
     private boolean isEjbArchive() {
-        return !classpathEntry.annotatedWith(EJB_ANNOTATIONS).isEmpty();
+        return classpathEntry.anyAnnotatedWith(EJB_ANNOTATIONS);
     }
 
     public JavaArchive getClasspathEntry() {
@@ -91,12 +254,12 @@ public class BeanArchive {
     }
 
     private boolean has(final String filename) {
-        return getClasspathEntry().findResource(filename) != null;
+        return classpathEntry.getSummary().hasResource(filename);
     }
 
     @SuppressWarnings("unchecked")
     private boolean hasAdditionalQualification() {
-        return !classpathEntry.annotatedWith(qualifyingAnnotations.toArray(new Class[]{})).isEmpty();
+        return classpathEntry.anyAnnotatedWith(qualifyingAnnotations.toArray(new Class[]{}));
     }
 
     private boolean hasBeansXml() {
@@ -113,4 +276,8 @@ public class BeanArchive {
     public Collection<Class<?>> getClassesWith(final Class<? extends Annotation> annotation) {
         return classpathEntry.annotatedWith(annotation);
     }
+
+    public Collection<String> getClassNamesWith(final Class<? extends Annotation> annotation) {
+        return classpathEntry.classNamesAnnotatedWith(annotation);
+    }
 }
@@ -15,20 +15,36 @@
  */
 package fi.testee.deployment;
 
+import fi.testee.classpath.ArchiveStatistics;
+import fi.testee.classpath.ClassLoaderAnalyzer;
 import fi.testee.classpath.Classpath;
 import fi.testee.classpath.ClasspathTransform;
 import fi.testee.classpath.JavaArchive;
+import fi.testee.config.TestEEfiConfiguration;
 import fi.testee.spi.QualifyingAnnotationExtension;
 import org.jboss.weld.ejb.spi.EjbDescriptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 
+import static java.util.Comparator.comparingLong;
 import static java.util.ServiceLoader.load;
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
 /**
@@ -39,12 +55,20 @@ import static java.util.stream.Collectors.toSet;
 public class BeanArchiveDiscovery {
     private static final Logger LOG = LoggerFactory.getLogger(BeanArchiveDiscovery.class);
 
+    static final String THREADS = ClassLoaderAnalyzer.THREADS;
+
+    private final Classpath classpath;
     private final Collection<BeanArchive> beanArchives;
+    private final Map<String, BeanArchive> beanArchivesByClassName;
+    // Later bean archives of classes contained in more than one, usually empty
+    private final Map<String, List<BeanArchive>> shadowedBeanArchivesByClassName;
+    private final List<ArchiveStatistics> statistics;
+    private final Map<Class<? extends Annotation>, Collection<Class<?>>> classesWith = new ConcurrentHashMap<>();
 
     /**
      * Returns the available bean archives on the classpath.
      *
-     * @return the available bean archives in an immutable collection.
+     * @return the available bean archives in an immutable collection, in classpath order.
      */
     public synchronized Collection<BeanArchive> getBeanArchives() {
         return beanArchives;
@@ -52,17 +76,117 @@ public class BeanArchiveDiscovery {
 
     public BeanArchiveDiscovery() {
         final long start = System.currentTimeMillis();
-        final Classpath cp = new Classpath(BeanArchiveDiscovery.class.getClassLoader());
-        final Collection<JavaArchive> classpathEntries = cp.getAll();
+        classpath = new Classpath(BeanArchiveDiscovery.class.getClassLoader());
+        final Collection<JavaArchive> classpathEntries = classpath.getAll();
         final Collection<JavaArchive> transformed = ClasspathTransform.transform(classpathEntries);
         final Collection<Class<? extends Annotation>> qualifyingAnnotations = collectQualifyingAnnotations();
         LOG.debug("Additional qualifying annotations: {}", qualifyingAnnotations);
-        beanArchives = transformed.parallelStream()
-                .map(it -> new BeanArchive(it, qualifyingAnnotations))
-                .filter(BeanArchive::isRelevant)
-                .peek(archive -> LOG.trace("Relevant bean archive: {}", archive.getClasspathEntry().getURL()))
-                .collect(toSet());
+        beanArchives = discover(transformed, qualifyingAnnotations);
+        beanArchivesByClassName = indexClassNames(beanArchives);
+        shadowedBeanArchivesByClassName = indexShadowedClassNames(beanArchives, beanArchivesByClassName);
+        // Irrelevant archives are never accessed again, so their file handles can be released right away
+        final Set<JavaArchive> relevant = beanArchives.stream().map(BeanArchive::getClasspathEntry).collect(toSet());
+        transformed.stream().filter(it -> !relevant.contains(it)).forEach(JavaArchive::close);
+        statistics = Collections.unmodifiableList(transformed.stream()
+                .map(JavaArchive::getStatistics)
+                .flatMap(Collection::stream)
+                .sorted(comparingLong(ArchiveStatistics::getDurationMillis).reversed())
+                .collect(toList()));
+        statistics.forEach(it -> LOG.debug("Scanned {}", it));
         LOG.debug("Bean archive discovery completed in {}ms", System.currentTimeMillis() - start);
+        ClassPreloader.preload(beanArchives);
+    }
+
+    private static Collection<BeanArchive> discover(
+            final Collection<JavaArchive> archives,
+            final Collection<Class<? extends Annotation>> qualifyingAnnotations
+    ) {
+        // Own pool, so discovery neither competes with nor is blocked by users of the common pool. Large
+        // archives are split into ranges of entries, which are stolen by idle workers.
+        final int threads = TestEEfiConfiguration.instance()
+                .getInt(THREADS, Runtime.getRuntime().availableProcessors());
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads), DiscoveryThread::new, null, false);
+        try {
+            final List<ForkJoinTask<BeanArchive>> tasks = archives.stream()
+                    .map(it -> pool.submit(() -> {
+                        final BeanArchive archive = new BeanArchive(it, qualifyingAnnotations);
+                        return archive.isRelevant() ? archive : null;
+                    }))
+                    .collect(toList());
+            return tasks.stream()
+                    .map(ForkJoinTask::join)
+                    .filter(Objects::nonNull)
+                    .peek(archive -> LOG.trace("Relevant bean archive: {}", archive.getClasspathEntry().getURL()))
+                    .collect(collectingAndThen(toList(), Collections::unmodifiableList));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Map<String, BeanArchive> indexClassNames(final Collection<BeanArchive> beanArchives) {
+        final Map<String, BeanArchive> ret = new HashMap<>();
+        // Classpath order, so a class present in multiple archives maps to the one the class loader would use
+        beanArchives.forEach(archive -> archive.getBeanClasses().forEach(it -> ret.putIfAbsent(it, archive)));
+        return Collections.unmodifiableMap(ret);
+    }
+
+    private static Map<String, List<BeanArchive>> indexShadowedClassNames(
+            final Collection<BeanArchive> beanArchives,
+            final Map<String, BeanArchive> beanArchivesByClassName
+    ) {
+        final Map<String, List<BeanArchive>> ret = new HashMap<>();
+        beanArchives.forEach(archive -> archive.getBeanClasses().stream()
+                .filter(it -> beanArchivesByClassName.get(it) != archive)
+                .forEach(it -> ret.computeIfAbsent(it, key -> new ArrayList<>()).add(archive)));
+        return Collections.unmodifiableMap(ret);
+    }
+
+    /**
+     * Finds the bean archive containing a class.
+     *
+     * @param className the fully qualified name of the class.
+     * @return the bean archive or <code>null</code> if the class is not contained in any bean archive. If
+     * multiple bean archives contain the class, the first one on the classpath is returned.
+     */
+    public BeanArchive findBeanArchive(final String className) {
+        return beanArchivesByClassName.get(className);
+    }
+
+    /**
+     * Finds all bean archives containing a class.
+     *
+     * @param className the fully qualified name of the class.
+     * @return the bean archives in classpath order, empty if the class is not contained in any bean archive.
+     */
+    public List<BeanArchive> findBeanArchives(final String className) {
+        final BeanArchive first = beanArchivesByClassName.get(className);
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        final List<BeanArchive> shadowed = shadowedBeanArchivesByClassName.get(className);
+        if (shadowed == null) {
+            return Collections.singletonList(first);
+        }
+        final List<BeanArchive> ret = new ArrayList<>(shadowed.size() + 1);
+        ret.add(first);
+        ret.addAll(shadowed);
+        return ret;
+    }
+
+    /**
+     * Returns statistics about scanning the classpath entries, slowest first.
+     *
+     * @return the statistics in an immutable list.
+     */
+    public List<ArchiveStatistics> getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Releases the resources held by the scanned classpath entries.
+     */
+    public void close() {
+        classpath.close();
     }
 
     private Collection<Class<? extends Annotation>> collectQualifyingAnnotations() {
@@ -73,10 +197,37 @@ public class BeanArchiveDiscovery {
         return ret;
     }
 
+    /**
+     * Returns the classes in the bean archives annotated with the given annotation, loading them if necessary.
+     *
+     * @param annotation the annotation to look for.
+     * @return the annotated classes.
+     */
     public Collection<Class<?>> getClassesWith(final Class<? extends Annotation> annotation) {
+        return classesWith.computeIfAbsent(annotation, key -> Collections.unmodifiableSet(beanArchives.stream()
+                .map(it -> it.getClassesWith(key))
+                .flatMap(Collection::stream)
+                .collect(toSet())));
+    }
+
+    /**
+     * Returns the names of the classes in the bean archives annotated with the given annotation without
+     * loading them.
+     *
+     * @param annotation the annotation to look for.
+     * @return the names of the annotated classes.
+     */
+    public Collection<String> getClassNamesWith(final Class<? extends Annotation> annotation) {
         return beanArchives.stream()
-                .map(it -> it.getClassesWith(annotation))
+                .map(it -> it.getClassNamesWith(annotation))
                 .flatMap(Collection::stream)
                 .collect(toSet());
     }
+
+    private static final class DiscoveryThread extends ForkJoinWorkerThread {
+        private DiscoveryThread(final ForkJoinPool pool) {
+            super(pool);
+            setName("testeefi-discovery-" + getPoolIndex());
+        }
+    }
 }
@@ -18,10 +18,11 @@ package fi.testee.deployment;
 import fi.testee.spi.DynamicArchiveContributor;
 import org.jboss.weld.bootstrap.api.ServiceRegistry;
 import org.jboss.weld.bootstrap.spi.BeanDeploymentArchive;
+import org.jboss.weld.ejb.spi.EjbDescriptor;
 
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Set;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -29,14 +30,32 @@ import static java.util.stream.Collectors.toSet;
 
 public class BeanDeployment implements DynamicArchiveContributor {
     private final BeanArchiveDiscovery beanArchiveDiscovery;
-    private final Predicate<BeanArchive> beanArchiveFilter;
+    private final Supplier<Collection<BeanArchive>> beanArchives;
+    private final Function<BeanArchive, Collection<String>> beanClasses;
+    private final Predicate<EjbDescriptor<?>> ejbFilter;
 
     public BeanDeployment(
             final BeanArchiveDiscovery beanArchiveDiscovery,
             final Predicate<BeanArchive> beanArchiveFilter
     ) {
         this.beanArchiveDiscovery = beanArchiveDiscovery;
-        this.beanArchiveFilter = beanArchiveFilter;
+        this.beanArchives = () -> beanArchiveDiscovery.getBeanArchives().stream()
+                .filter(beanArchiveFilter)
+                .collect(toSet());
+        this.beanClasses = BeanArchive::getDeployedBeanClasses;
+        this.ejbFilter = it -> true;
+    }
+
+    BeanDeployment(
+            final BeanArchiveDiscovery beanArchiveDiscovery,
+            final Collection<BeanArchive> beanArchives,
+            final Function<BeanArchive, Collection<String>> beanClasses,
+            final Predicate<EjbDescriptor<?>> ejbFilter
+    ) {
+        this.beanArchiveDiscovery = beanArchiveDiscovery;
+        this.beanArchives = () -> beanArchives;
+        this.beanClasses = beanClasses;
+        this.ejbFilter = ejbFilter;
     }
 
     @Override
@@ -44,9 +63,15 @@ public class BeanDeployment implements DynamicArchiveContributor {
             final ServiceRegistry serviceRegistry,
             final Supplier<Collection<BeanDeploymentArchive>> archives
     ) {
-        final Set<BeanArchive> beanArchives = beanArchiveDiscovery.getBeanArchives().stream().filter(beanArchiveFilter).collect(toSet());
-        return beanArchives.stream()
-                .map(it -> new BeanDeploymentArchiveImpl(serviceRegistry, it, archives))
+        return beanArchives.get().stream()
+                .map(it -> new BeanDeploymentArchiveImpl(
+                        serviceRegistry,
+                        it,
+                        beanArchiveDiscovery,
+                        archives,
+                        beanClasses.apply(it),
+                        it.getEjbs().stream().filter(ejbFilter).collect(toSet())
+                ))
                 .collect(toSet());
     }
 
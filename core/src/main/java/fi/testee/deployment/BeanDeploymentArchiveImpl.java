@@ -15,98 +15,77 @@
  */
 package fi.testee.deployment;
 
-import fi.testee.classpath.ClasspathResource;
 import fi.testee.classpath.JavaArchive;
-import fi.testee.exceptions.TestEEfiException;
 import org.jboss.weld.bootstrap.api.ServiceRegistry;
 import org.jboss.weld.bootstrap.spi.BeanDeploymentArchive;
 import org.jboss.weld.bootstrap.spi.BeansXml;
 import org.jboss.weld.ejb.spi.EjbDescriptor;
-import org.jboss.weld.xml.BeansXmlHandler;
-import org.jboss.weld.xml.XmlSchema;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Objects;
 import java.util.function.Supplier;
 
-import static java.util.Arrays.stream;
-import static java.util.stream.Collectors.toSet;
-import static org.jboss.weld.bootstrap.spi.BeansXml.EMPTY_BEANS_XML;
-
 /**
  * Implementation of a {@link BeanDeploymentArchive} (or short <i>BDA</i>), which basically links a {@link JavaArchive}
  * to a {@link DeploymentImpl deployment}.
+ * <p>
+ * The bean classes honor the bean discovery mode and the scan excludes of the <code>beans.xml</code>, so Weld
+ * doesn't have to process classes which can't become beans anyway. Archives without a <code>beans.xml</code>
+ * are treated like bean discovery mode <code>all</code> for compatibility, setting the
+ * {@link fi.testee.config.TestEEfiConfiguration configuration} key <code>testeefi.discovery.implicitArchives</code> to
+ * <code>annotated</code> applies bean discovery mode <code>annotated</code> to them instead, like a CDI
+ * container does for implicit bean archives.</p>
  *
  * @author Alex Stockinger, IT-Stockinger
  */
 public class BeanDeploymentArchiveImpl implements BeanDeploymentArchive {
     private final ServiceRegistry serviceRegistry;
     private final BeanArchive beanArchive;
+    private final BeanArchiveDiscovery beanArchiveDiscovery;
     private final Supplier<Collection<BeanDeploymentArchive>> archivesSupplier;
     private final BeansXml beansXml;
+    private final Collection<String> beanClasses;
+    private final Collection<EjbDescriptor<?>> ejbs;
 
     public BeanDeploymentArchiveImpl(
             final ServiceRegistry serviceRegistry,
             final BeanArchive beanArchive,
+            final BeanArchiveDiscovery beanArchiveDiscovery,
             final Supplier<Collection<BeanDeploymentArchive>> archivesSupplier
+    ) {
+        this(
+                serviceRegistry,
+                beanArchive,
+                beanArchiveDiscovery,
+                archivesSupplier,
+                beanArchive.getDeployedBeanClasses(),
+                new HashSet<>(beanArchive.getEjbs())
+        );
+    }
+
+    BeanDeploymentArchiveImpl(
+            final ServiceRegistry serviceRegistry,
+            final BeanArchive beanArchive,
+            final BeanArchiveDiscovery beanArchiveDiscovery,
+            final Supplier<Collection<BeanDeploymentArchive>> archivesSupplier,
+            final Collection<String> beanClasses,
+            final Collection<EjbDescriptor<?>> ejbs
     ) {
         this.serviceRegistry = serviceRegistry;
         this.beanArchive = beanArchive;
+        this.beanArchiveDiscovery = beanArchiveDiscovery;
         this.archivesSupplier = archivesSupplier;
-
-        final ClasspathResource resource = beanArchive.getClasspathEntry().findResource("META-INF/beans.xml");
-        beansXml = resource == null ? EMPTY_BEANS_XML : readBeansXml(beanArchive, resource);
+        this.beansXml = beanArchive.getBeansXml();
+        this.beanClasses = beanClasses;
+        this.ejbs = ejbs;
     }
 
-    private BeansXml readBeansXml(BeanArchive beanArchive, ClasspathResource resource) {
-        try {
-            final SAXParserFactory factory = SAXParserFactory.newInstance();
-            factory.setValidating(true);
-            factory.setNamespaceAware(true);
-            final SAXParser parser = factory.newSAXParser();
-            final InputSource source = new InputSource(new ByteArrayInputStream(resource.getBytes()));
-            if (source.getByteStream().available() == 0) {
-                // The file is just acting as a marker file
-                return EMPTY_BEANS_XML;
-            }
-            final BeansXmlHandler handler = new BeansXmlHandler(beanArchive.getClasspathEntry().getURL());
-            parser.setProperty("http://java.sun.com/xml/jaxp/properties/schemaLanguage", "http://www.w3.org/2001/XMLSchema");
-            parser.setProperty("http://java.sun.com/xml/jaxp/properties/schemaSource", loadXsds());
-            parser.parse(source, handler);
-            return handler.createBeansXml();
-        } catch (final SAXException | ParserConfigurationException | IOException e) {
-            throw new TestEEfiException(
-                    "Failed to parse META-INF/beans.xml in " + beanArchive.getClasspathEntry().getURL(),
-                    e
-            );
-        }
+    BeanArchive getBeanArchive() {
+        return beanArchive;
     }
 
-    private static InputSource[] loadXsds() {
-        return stream(XmlSchema.values())
-                .map(schema -> loadXsd(schema.getFileName(), schema.getClassLoader()))
-                .filter(Objects::nonNull)
-                .collect(toSet())
-                .toArray(new InputSource[]{});
-    }
-
-
-    private static InputSource loadXsd(final String name, final ClassLoader classLoader) {
-        final InputStream in = classLoader.getResourceAsStream(name);
-        if (in == null) {
-            return null;
-        } else {
-            return new InputSource(in);
-        }
+    BeanArchiveDiscovery getBeanArchiveDiscovery() {
+        return beanArchiveDiscovery;
     }
 
     @Override
@@ -116,7 +95,7 @@ public class BeanDeploymentArchiveImpl implements BeanDeploymentArchive {
 
     @Override
     public Collection<String> getBeanClasses() {
-        return beanArchive.getBeanClasses();
+        return beanClasses;
     }
 
     @Override
@@ -126,7 +105,7 @@ public class BeanDeploymentArchiveImpl implements BeanDeploymentArchive {
 
     @Override
     public Collection<EjbDescriptor<?>> getEjbs() {
-        return new HashSet<>(beanArchive.getEjbs());
+        return new HashSet<>(ejbs);
     }
 
     @Override
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import fi.testee.exceptions.TestEEfiException;
+import org.jboss.weld.bootstrap.spi.BeansXml;
+import org.jboss.weld.xml.BeansXmlHandler;
+import org.jboss.weld.xml.XmlSchema;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Objects;
+
+import static java.util.Arrays.stream;
+import static org.jboss.weld.bootstrap.spi.BeansXml.EMPTY_BEANS_XML;
+
+/**
+ * Parses <code>beans.xml</code> files, validating them against the XSDs shipped with Weld. Thread safe.
+ * <p>
+ * The XSDs are compiled into a {@link Schema} once, when the first non-empty <code>beans.xml</code> is
+ * parsed.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class BeansXmlParser {
+    private BeansXmlParser() {
+    }
+
+    /**
+     * Parses a <code>beans.xml</code>.
+     *
+     * @param archive the URL of the java archive containing the <code>beans.xml</code>.
+     * @param content the contents of the <code>beans.xml</code>.
+     * @return the parsed <code>beans.xml</code>.
+     * @throws TestEEfiException if the <code>beans.xml</code> cannot be parsed.
+     */
+    static BeansXml parse(final URL archive, final byte[] content) {
+        if (content.length == 0) {
+            // The file is just acting as a marker file
+            return EMPTY_BEANS_XML;
+        }
+        try {
+            final SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setSchema(SchemaHolder.SCHEMA);
+            final BeansXmlHandler handler = new BeansXmlHandler(archive);
+            factory.newSAXParser().parse(new InputSource(new ByteArrayInputStream(content)), handler);
+            return handler.createBeansXml();
+        } catch (final SAXException | ParserConfigurationException | IOException e) {
+            throw new TestEEfiException("Failed to parse META-INF/beans.xml in " + archive, e);
+        }
+    }
+
+    // Lazy holder, compiling the schema on first use
+    private static final class SchemaHolder {
+        private static final Schema SCHEMA = compile();
+
+        private static Schema compile() {
+            final Source[] xsds = stream(XmlSchema.values())
+                    .map(schema -> schema.getClassLoader().getResource(schema.getFileName()))
+                    .filter(Objects::nonNull)
+                    .map(URL::toExternalForm)
+                    .distinct()
+                    .map(StreamSource::new)
+                    .toArray(Source[]::new);
+            try {
+                return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(xsds);
+            } catch (final SAXException e) {
+                throw new TestEEfiException("Failed to compile the beans.xml schema", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import fi.testee.config.TestEEfiConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Comparator.comparing;
+
+/**
+ * Loads the bean classes of the discovered bean archives in the background, so class loading overlaps with the
+ * other startup work instead of happening serially when Weld deploys the beans. Thread safe.
+ * <p>
+ * Enabled by setting the {@link TestEEfiConfiguration configuration} key
+ * <code>testeefi.discovery.preloadClasses</code> to the maximum number of classes to load, which bounds the
+ * additional Metaspace used by classes Weld might not need after all. The classes of the framework archives are
+ * loaded first, as they are deployed first. The size of the pool of daemon threads can be configured via the key
+ * <code>testeefi.discovery.preloadThreads</code> and defaults to 2.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class ClassPreloader {
+    private static final Logger LOG = LoggerFactory.getLogger(ClassPreloader.class);
+    static final String MAX_CLASSES = "testeefi.discovery.preloadClasses";
+    static final String THREADS = "testeefi.discovery.preloadThreads";
+    private static final int CHUNK_SIZE = 64;
+
+    private ClassPreloader() {
+    }
+
+    /**
+     * Starts loading the bean classes of the bean archives, if enabled in the configuration. Returns immediately.
+     *
+     * @param beanArchives the bean archives in classpath order.
+     */
+    static void preload(final Collection<BeanArchive> beanArchives) {
+        final TestEEfiConfiguration configuration = TestEEfiConfiguration.instance();
+        final int maxClasses = configuration.getInt(MAX_CLASSES, 0);
+        if (maxClasses <= 0) {
+            return;
+        }
+        final int threads = Math.max(1, configuration.getInt(THREADS, 2));
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new PreloadThreadFactory());
+        final long start = System.nanoTime();
+        final AtomicInteger loaded = new AtomicInteger();
+        // Resolving the classes to deploy involves reading beans.xml files, so it's done in the background, too
+        CompletableFuture.supplyAsync(() -> classNames(beanArchives, maxClasses), executor)
+                .thenCompose(classNames -> CompletableFuture.allOf(chunks(classNames).stream()
+                        .map(chunk -> CompletableFuture.runAsync(() -> load(chunk, loaded), executor))
+                        .toArray(CompletableFuture[]::new)))
+                .whenComplete((result, e) -> {
+                    executor.shutdown();
+                    if (e != null) {
+                        LOG.debug("Failed to preload bean classes", e);
+                    } else {
+                        final long millis = (System.nanoTime() - start) / 1_000_000;
+                        LOG.debug("Preloaded {} bean classes in {}ms", loaded.get(), millis);
+                    }
+                });
+    }
+
+    static Set<String> classNames(final Collection<BeanArchive> beanArchives, final int maxClasses) {
+        final List<BeanArchive> sorted = new ArrayList<>(beanArchives);
+        sorted.sort(comparing(it -> !it.isFrameworkRelevant()));
+        final Set<String> ret = new LinkedHashSet<>();
+        // Stops as soon as enough classes are collected, so the remaining archives' beans.xml files aren't read
+        for (final BeanArchive archive : sorted) {
+            if (ret.size() >= maxClasses) {
+                break;
+            }
+            for (final String className : archive.getDeployedBeanClasses()) {
+                ret.add(className);
+                if (ret.size() >= maxClasses) {
+                    break;
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static List<List<String>> chunks(final Collection<String> classNames) {
+        final List<List<String>> ret = new ArrayList<>();
+        List<String> chunk = null;
+        for (final String className : classNames) {
+            if (chunk == null || chunk.size() == CHUNK_SIZE) {
+                chunk = new ArrayList<>(CHUNK_SIZE);
+                ret.add(chunk);
+            }
+            chunk.add(className);
+        }
+        return ret;
+    }
+
+    private static void load(final Collection<String> classNames, final AtomicInteger loaded) {
+        final ClassLoader classLoader = ClassPreloader.class.getClassLoader();
+        for (final String className : classNames) {
+            try {
+                // Loads without initializing, querying the methods links the class and caches its reflection
+                // data, which Weld reads anyway
+                Class.forName(className, false, classLoader).getDeclaredMethods();
+                loaded.incrementAndGet();
+            } catch (final ClassNotFoundException | LinkageError e) {
+                // Reported by Weld, if the class is needed at all
+                LOG.trace("Failed to preload {}", className, e);
+            }
+        }
+    }
+
+    private static final class PreloadThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread ret = new Thread(r, "testeefi-preload-" + count.getAndIncrement());
+            ret.setDaemon(true);
+            return ret;
+        }
+    }
+}
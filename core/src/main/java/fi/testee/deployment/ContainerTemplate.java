@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import org.jboss.weld.ejb.spi.EjbDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * The bean archives deployed by a kind of Weld container. Immutable and thus thread safe.
+ * <p>
+ * The bean archives memoize their <code>beans.xml</code>, bean classes and EJB descriptors themselves, so a
+ * template only selects the archives to deploy, once for all containers created from it.</p>
+ * <p>
+ * A template can be {@link #prunedTo(Class) pruned} to the beans reachable from a test class. Setting the
+ * {@link fi.testee.config.TestEEfiConfiguration configuration} key <code>testeefi.deployment.pruning</code> to
+ * <code>true</code> enables this for the application containers of the test instances. Classes created on
+ * demand that were pruned nevertheless can still be deployed from the {@link #getUnpruned() unpruned
+ * template}.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+public class ContainerTemplate {
+    private static final Logger LOG = LoggerFactory.getLogger(ContainerTemplate.class);
+    public static final String PRUNING = "testeefi.deployment.pruning";
+
+    private final BeanArchiveDiscovery beanArchiveDiscovery;
+    // In classpath order
+    private final Collection<BeanArchive> beanArchives;
+    // Only set if pruned
+    private final Map<BeanArchive, Collection<String>> prunedBeanClasses;
+    private final Set<EjbDescriptor<?>> prunedEjbs;
+    private final ContainerTemplate unpruned;
+
+    /**
+     * Constructor.
+     *
+     * @param beanArchiveDiscovery the discovery to take the bean archives from.
+     * @param filter               selects the bean archives to deploy.
+     */
+    public ContainerTemplate(
+            final BeanArchiveDiscovery beanArchiveDiscovery,
+            final Predicate<BeanArchive> filter
+    ) {
+        this.beanArchiveDiscovery = beanArchiveDiscovery;
+        this.beanArchives = Collections.unmodifiableList(beanArchiveDiscovery.getBeanArchives().stream()
+                .filter(filter)
+                .collect(toList()));
+        this.prunedBeanClasses = null;
+        this.prunedEjbs = null;
+        this.unpruned = null;
+    }
+
+    private ContainerTemplate(
+            final ContainerTemplate unpruned,
+            final Map<BeanArchive, Collection<String>> prunedBeanClasses,
+            final Set<EjbDescriptor<?>> prunedEjbs
+    ) {
+        this.beanArchiveDiscovery = unpruned.beanArchiveDiscovery;
+        this.beanArchives = unpruned.beanArchives;
+        this.prunedBeanClasses = prunedBeanClasses;
+        this.prunedEjbs = prunedEjbs;
+        this.unpruned = unpruned;
+    }
+
+    /**
+     * Restricts the template to the beans reachable from the injection points of a class, plus the beans of
+     * the framework archives. If the reachable beans can't be determined reliably, e.g. because of an
+     * injection point of type {@link Object}, the template is used as is.
+     *
+     * @param root the class to start from, usually the test class.
+     * @return the pruned template or this template if pruning is not possible.
+     */
+    public ContainerTemplate prunedTo(final Class<?> root) {
+        final long start = System.nanoTime();
+        final Map<BeanArchive, Collection<String>> candidates = new LinkedHashMap<>();
+        beanArchives.forEach(archive -> {
+            if (!archive.isFrameworkRelevant()) {
+                candidates.put(archive, beanClasses(archive));
+            }
+        });
+        final ReachableBeans reachableBeans = new ReachableBeans(beanArchiveDiscovery, candidates);
+        final Set<String> reachable = reachableBeans.from(root);
+        if (reachable == null) {
+            LOG.info(
+                    "Deploying all {} bean classes for {}, {}",
+                    countBeanClasses(),
+                    root.getName(),
+                    reachableBeans.getInconclusiveReason()
+            );
+            return this;
+        }
+        final Map<BeanArchive, Collection<String>> classes = new LinkedHashMap<>();
+        candidates.forEach((archive, archiveClasses) -> classes.put(archive, retain(archiveClasses, reachable)));
+        final Set<EjbDescriptor<?>> ejbs = new HashSet<>();
+        ejbs().forEach(descriptor -> {
+            if (reachable.contains(descriptor.getBeanClass().getName()) || !isCandidate(descriptor, candidates)) {
+                ejbs.add(descriptor);
+            }
+        });
+        final ContainerTemplate ret = new ContainerTemplate(
+                this,
+                Collections.unmodifiableMap(classes),
+                Collections.unmodifiableSet(ejbs)
+        );
+        LOG.info(
+                "Pruned deployment for {} from {} to {} bean classes and from {} to {} EJBs in {}ms",
+                root.getName(),
+                countBeanClasses(),
+                ret.countBeanClasses(),
+                ejbs().size(),
+                ret.ejbs().size(),
+                (System.nanoTime() - start) / 1_000_000
+        );
+        return ret;
+    }
+
+    private static Collection<String> retain(final Collection<String> classes, final Set<String> reachable) {
+        return classes.stream()
+                .filter(reachable::contains)
+                .collect(collectingAndThen(toSet(), Collections::unmodifiableSet));
+    }
+
+    private static boolean isCandidate(
+            final EjbDescriptor<?> descriptor,
+            final Map<BeanArchive, Collection<String>> candidates
+    ) {
+        final String className = descriptor.getBeanClass().getName();
+        return candidates.values().stream().anyMatch(it -> it.contains(className));
+    }
+
+    private int countBeanClasses() {
+        return beanArchives.stream().mapToInt(it -> beanClasses(it).size()).sum();
+    }
+
+    private Collection<String> beanClasses(final BeanArchive archive) {
+        final Collection<String> pruned = prunedBeanClasses == null ? null : prunedBeanClasses.get(archive);
+        return pruned == null ? archive.getDeployedBeanClasses() : pruned;
+    }
+
+    private boolean deploysEjb(final EjbDescriptor<?> descriptor) {
+        return prunedEjbs == null || prunedEjbs.contains(descriptor);
+    }
+
+    private Collection<EjbDescriptorImpl<?>> ejbs() {
+        return beanArchives.stream()
+                .map(BeanArchive::getEjbs)
+                .flatMap(Collection::stream)
+                .filter(this::deploysEjb)
+                .collect(toList());
+    }
+
+    /**
+     * The template this template was {@link #prunedTo(Class) pruned} from.
+     *
+     * @return the unpruned template or this template if it wasn't pruned.
+     */
+    public ContainerTemplate getUnpruned() {
+        return unpruned == null ? this : unpruned;
+    }
+
+    /**
+     * Checks if a class is deployed as a bean class.
+     *
+     * @param className the fully qualified name of the class.
+     * @return <code>true</code> if the class is a bean class of any of the bean archives to deploy.
+     */
+    public boolean deploys(final String className) {
+        return beanArchives.stream().anyMatch(it -> beanClasses(it).contains(className));
+    }
+
+    /**
+     * Creates a {@link fi.testee.spi.DynamicArchiveContributor} for the bean archives of the template.
+     *
+     * @return the bean deployment.
+     */
+    public BeanDeployment beanDeployment() {
+        return new BeanDeployment(beanArchiveDiscovery, beanArchives, this::beanClasses, this::deploysEjb);
+    }
+
+    /**
+     * The bean archives to deploy.
+     *
+     * @return the bean archives in classpath order.
+     */
+    public Collection<BeanArchive> getBeanArchives() {
+        return beanArchives;
+    }
+
+    /**
+     * The EJBs of the bean archives to deploy.
+     *
+     * @return the EJB descriptors, each mapped to itself.
+     */
+    public Map<EjbDescriptor<?>, EjbDescriptorImpl<?>> getEjbDescriptors() {
+        return ejbs().stream().collect(toMap(it -> it, it -> it));
+    }
+}
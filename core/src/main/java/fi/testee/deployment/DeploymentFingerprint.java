@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import fi.testee.exceptions.TestEEfiException;
+import org.jboss.weld.bootstrap.api.Environments;
+import org.jboss.weld.bootstrap.spi.BeanDeploymentArchive;
+import org.jboss.weld.bootstrap.spi.BeansXml;
+import org.jboss.weld.bootstrap.spi.Deployment;
+import org.jboss.weld.bootstrap.spi.Metadata;
+import org.jboss.weld.ejb.spi.EjbDescriptor;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Identifies the structure of a {@link Deployment}: the bean deployment archives with their bean classes,
+ * (possibly modified) <code>beans.xml</code> and EJBs, the extension classes and the environment. Two
+ * deployments with the same fingerprint yield the same beans, only the instances backing them (like mocks or
+ * resources) may differ.
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+public final class DeploymentFingerprint {
+    private DeploymentFingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint of a deployment.
+     *
+     * @param deployment  the deployment.
+     * @param environment the environment the deployment is bootstrapped in.
+     * @return the fingerprint.
+     */
+    public static String of(final Deployment deployment, final Environments environment) {
+        final String extensions = StreamSupport.stream(deployment.getExtensions().spliterator(), false)
+                .map(it -> it.getValue().getClass().getName())
+                .sorted()
+                .collect(joining(","));
+        final String archives = deployment.getBeanDeploymentArchives().stream()
+                .sorted(comparing(BeanDeploymentArchive::getId))
+                .map(DeploymentFingerprint::of)
+                .collect(joining(";"));
+        return environment + "|" + extensions + "|" + archives;
+    }
+
+    private static String of(final BeanDeploymentArchive archive) {
+        final BeansXml beansXml = archive.getBeansXml();
+        return archive.getId()
+                + "[" + digest(archive.getBeanClasses())
+                + "," + ejbs(archive.getEjbs())
+                + "," + (beansXml == null ? "" : beansXml(beansXml))
+                + "]";
+    }
+
+    // Sorted, as the bean classes are usually stored in sets
+    private static String digest(final Collection<String> classNames) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            classNames.stream().sorted().forEach(it -> {
+                digest.update(it.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            });
+            return classNames.size() + ":" + String.format("%064x", new BigInteger(1, digest.digest()));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new TestEEfiException("JRE doesn't know SHA-256", e);
+        }
+    }
+
+    private static String ejbs(final Collection<EjbDescriptor<?>> ejbs) {
+        return ejbs.stream()
+                .map(it -> it.getEjbName() + "=" + it.getBeanClass().getName())
+                .sorted()
+                .collect(joining(","));
+    }
+
+    private static String beansXml(final BeansXml beansXml) {
+        return beansXml.getBeanDiscoveryMode()
+                + ":" + values(beansXml.getEnabledAlternativeClasses())
+                + ":" + values(beansXml.getEnabledAlternativeStereotypes())
+                + ":" + values(beansXml.getEnabledDecorators())
+                + ":" + values(beansXml.getEnabledInterceptors());
+    }
+
+    private static List<String> values(final List<Metadata<String>> metadata) {
+        return metadata == null
+                ? null
+                : metadata.stream().map(Metadata::getValue).collect(toList());
+    }
+}
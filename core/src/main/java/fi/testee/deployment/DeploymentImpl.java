@@ -23,8 +23,12 @@ import org.jboss.weld.bootstrap.spi.CDI11Deployment;
 import org.jboss.weld.bootstrap.spi.Metadata;
 
 import javax.enterprise.inject.spi.Extension;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static java.util.stream.Collectors.toMap;
 
@@ -40,6 +44,11 @@ public class DeploymentImpl implements CDI11Deployment {
     private final ServiceRegistry serviceRegistry;
     private final Collection<Metadata<Extension>> extensions;
     private final Map<BeanDeploymentArchive, BeanDeploymentArchive> archives;
+    // Archives backed by discovered bean archives, whose classes are looked up via the discovery's index
+    private final Map<BeanArchive, BeanDeploymentArchive> indexedArchives = new HashMap<>();
+    private final Set<BeanArchiveDiscovery> discoveries = new HashSet<>();
+    // Archives with dynamic contents, which have to be searched
+    private final Collection<BeanDeploymentArchive> dynamicArchives = new ArrayList<>();
 
     public DeploymentImpl(
             final Collection<DynamicArchiveContributor> dynamicArchiveContributors,
@@ -56,6 +65,15 @@ public class DeploymentImpl implements CDI11Deployment {
                 ));
         this.serviceRegistry = serviceRegistry;
         this.extensions = extensions;
+        archives.forEach((archive, wrapped) -> {
+            if (archive instanceof BeanDeploymentArchiveImpl) {
+                final BeanDeploymentArchiveImpl impl = (BeanDeploymentArchiveImpl) archive;
+                indexedArchives.put(impl.getBeanArchive(), wrapped);
+                discoveries.add(impl.getBeanArchiveDiscovery());
+            } else {
+                dynamicArchives.add(wrapped);
+            }
+        });
     }
 
     private Collection<BeanDeploymentArchive> archiveSupplier() {
@@ -79,8 +97,20 @@ public class DeploymentImpl implements CDI11Deployment {
 
     @Override
     public BeanDeploymentArchive loadBeanDeploymentArchive(final Class<?> aClass) {
-        for (final BeanDeploymentArchive archive : getBeanDeploymentArchives()) {
-            if (archive.getBeanClasses().contains(aClass.getName())) {
+        final String className = aClass.getName();
+        for (final BeanArchiveDiscovery discovery : discoveries) {
+            // A deployment may contain only some of the discovered archives (e.g. the framework archives or a
+            // pruned application), so the first archive on the classpath containing the class is not
+            // necessarily part of it while a later one with a duplicate of the class is
+            for (final BeanArchive beanArchive : discovery.findBeanArchives(className)) {
+                final BeanDeploymentArchive archive = indexedArchives.get(beanArchive);
+                if (archive != null) {
+                    return archive;
+                }
+            }
+        }
+        for (final BeanDeploymentArchive archive : dynamicArchives) {
+            if (archive.getBeanClasses().contains(className)) {
                 return archive;
             }
         }
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import fi.testee.classpath.ClassHeader;
+import fi.testee.classpath.ClasspathResource;
+import fi.testee.exceptions.TestEEfiException;
+import fi.testee.spi.PruningRootExtension;
+import org.apache.commons.io.IOUtils;
+
+import javax.decorator.Decorator;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.ejb.Startup;
+import javax.enterprise.event.Event;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Instance;
+import javax.enterprise.inject.Produces;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.interceptor.Interceptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static java.util.Arrays.stream;
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.toSet;
+import static org.apache.commons.lang3.ClassUtils.primitiveToWrapper;
+
+/**
+ * Computes the bean classes reachable from a root class, i.e. the transitive closure over the injection points
+ * (<code>@Inject</code> and <code>@EJB</code>) of the root class and the beans and producers satisfying them.
+ * Interceptors, decorators, observers, message driven beans, startup EJBs and the classes marked by the
+ * {@link PruningRootExtension pruning root extensions} of plugins are always considered reachable, as they are
+ * invoked without being injected. Not thread safe.
+ * <p>
+ * The candidate beans are matched by their types as declared in their class files, so only the reachable
+ * classes and the classes declaring producers are loaded. If an injection point can't be resolved by type
+ * (e.g. a type variable, {@link Object} or {@link BeanManager}), the analysis is inconclusive.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class ReachableBeans {
+    private static final String OBJECT = Object.class.getName();
+    // Resources are provided by the resource injection services, not by beans
+    private static final Collection<Class<? extends Annotation>> INJECTIONS = asList(
+            Inject.class,
+            EJB.class
+    );
+    private static final Collection<Class<? extends Annotation>> ROOTS = roots();
+    private static final Set<String> ROOT_NAMES = ROOTS.stream()
+            .map(Class::getName)
+            .collect(collectingAndThen(toSet(), Collections::unmodifiableSet));
+
+    private final ClassLoader classLoader = ReachableBeans.class.getClassLoader();
+    private final BeanArchiveDiscovery beanArchiveDiscovery;
+    private final Map<BeanArchive, Collection<String>> candidates;
+    private final Set<String> candidateClasses = new HashSet<>();
+    private final Map<String, ClassHeader> headers = new HashMap<>();
+    private final Map<String, Boolean> rootAnnotations = new HashMap<>();
+    // Maps each type to the candidate classes being or producing it
+    private final Map<String, Set<String>> providers = new HashMap<>();
+    private final Set<String> reachable = new HashSet<>();
+    private final Deque<String> pending = new ArrayDeque<>();
+    private String inconclusive;
+
+    /**
+     * Constructor.
+     *
+     * @param beanArchiveDiscovery the discovery to look up class files in.
+     * @param candidates           the candidate bean classes by bean archive.
+     */
+    ReachableBeans(
+            final BeanArchiveDiscovery beanArchiveDiscovery,
+            final Map<BeanArchive, Collection<String>> candidates
+    ) {
+        this.beanArchiveDiscovery = beanArchiveDiscovery;
+        this.candidates = candidates;
+        candidates.values().forEach(candidateClasses::addAll);
+    }
+
+    /**
+     * Computes the reachable bean classes.
+     *
+     * @param root the class to start from.
+     * @return the reachable bean classes or <code>null</code> if the analysis is inconclusive.
+     */
+    Set<String> from(final Class<?> root) {
+        indexProviders();
+        reachable.add(root.getName());
+        analyze(root);
+        candidates.forEach((archive, classes) -> archive.getClasspathEntry().getSummary().getAnnotationIndex()
+                .forEach((annotation, annotated) -> {
+                    if (isRoot(annotation)) {
+                        annotated.stream().filter(classes::contains).forEach(this::reach);
+                    }
+                }));
+        while (inconclusive == null && !pending.isEmpty()) {
+            analyze(load(pending.pop()));
+        }
+        return inconclusive == null ? Collections.unmodifiableSet(reachable) : null;
+    }
+
+    private static Collection<Class<? extends Annotation>> roots() {
+        final Collection<Class<? extends Annotation>> ret = new ArrayList<>(asList(
+                Interceptor.class,
+                Decorator.class,
+                Observes.class,
+                MessageDriven.class,
+                Startup.class
+        ));
+        ServiceLoader.load(PruningRootExtension.class).forEach(it -> ret.addAll(it.getRootAnnotations()));
+        return Collections.unmodifiableCollection(ret);
+    }
+
+    private boolean isRoot(final String annotation) {
+        return ROOT_NAMES.contains(annotation) || rootAnnotations.computeIfAbsent(annotation, this::isMetaRoot);
+    }
+
+    private boolean isMetaRoot(final String annotation) {
+        try {
+            final Class<?> clazz = Class.forName(annotation, false, classLoader);
+            return ROOTS.stream().anyMatch(clazz::isAnnotationPresent);
+        } catch (final ClassNotFoundException | LinkageError e) {
+            // Annotations missing at runtime are ignored by the JVM as well
+            return false;
+        }
+    }
+
+    /**
+     * The reason why the analysis is inconclusive.
+     *
+     * @return the reason or <code>null</code> if the analysis is conclusive.
+     */
+    String getInconclusiveReason() {
+        return inconclusive;
+    }
+
+    private void indexProviders() {
+        candidateClasses.forEach(it -> supertypes(it).forEach(type -> provide(type, it)));
+        candidates.forEach((archive, classes) -> archive.getClassNamesWith(Produces.class).stream()
+                .filter(classes::contains)
+                .forEach(this::indexProducers));
+    }
+
+    private void indexProducers(final String className) {
+        final Class<?> clazz = load(className);
+        if (clazz == null) {
+            return;
+        }
+        for (final Method method : clazz.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(Produces.class)) {
+                produced(method.getReturnType(), className);
+            }
+        }
+        for (final Field field : clazz.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Produces.class)) {
+                produced(field.getType(), className);
+            }
+        }
+    }
+
+    private void produced(final Class<?> type, final String producer) {
+        if (type.isArray()) {
+            provide(type.getName(), producer);
+        } else {
+            supertypes(primitiveToWrapper(type).getName()).forEach(it -> provide(it, producer));
+        }
+    }
+
+    private void provide(final String type, final String provider) {
+        providers.computeIfAbsent(type, it -> new HashSet<>()).add(provider);
+    }
+
+    private Set<String> supertypes(final String className) {
+        final Set<String> ret = new HashSet<>();
+        final Deque<String> todo = new ArrayDeque<>();
+        todo.push(className);
+        while (!todo.isEmpty()) {
+            final String type = todo.pop();
+            if (OBJECT.equals(type) || !ret.add(type)) {
+                continue;
+            }
+            final ClassHeader header = header(type);
+            if (header != null) {
+                if (header.getSuperclassName() != null) {
+                    todo.push(header.getSuperclassName());
+                }
+                header.getInterfaceNames().forEach(todo::push);
+            }
+        }
+        return ret;
+    }
+
+    private ClassHeader header(final String className) {
+        if (headers.containsKey(className)) {
+            return headers.get(className);
+        }
+        final byte[] classFile = classFile(className);
+        final ClassHeader ret = classFile == null ? null : ClassHeader.read(ByteBuffer.wrap(classFile));
+        headers.put(className, ret);
+        return ret;
+    }
+
+    private byte[] classFile(final String className) {
+        final String name = className.replace('.', '/') + ".class";
+        try {
+            final BeanArchive archive = beanArchiveDiscovery.findBeanArchive(className);
+            final ClasspathResource resource = archive == null
+                    ? null
+                    : archive.getClasspathEntry().findResource(name);
+            if (resource != null) {
+                return resource.getBytes();
+            }
+            // Not part of a bean archive, e.g. an interface from a library
+            try (final InputStream in = classLoader.getResourceAsStream(name)) {
+                return in == null ? null : IOUtils.toByteArray(in);
+            }
+        } catch (final IOException e) {
+            throw new TestEEfiException("Failed to read class file of " + className, e);
+        }
+    }
+
+    private void reach(final String className) {
+        if (reachable.add(className) && candidateClasses.contains(className)) {
+            pending.push(className);
+        }
+    }
+
+    private Class<?> load(final String className) {
+        try {
+            return Class.forName(className, false, classLoader);
+        } catch (final ClassNotFoundException | LinkageError e) {
+            inconclusive = "failed to load " + className + ": " + e;
+            return null;
+        }
+    }
+
+    private void analyze(final Class<?> clazz) {
+        for (Class<?> type = clazz; type != null && type != Object.class; type = type.getSuperclass()) {
+            for (final Field field : type.getDeclaredFields()) {
+                if (isInjection(field)) {
+                    require(field.getGenericType(), field);
+                }
+            }
+            for (final Constructor<?> constructor : type.getDeclaredConstructors()) {
+                if (constructor.isAnnotationPresent(Inject.class)) {
+                    requireParameters(constructor);
+                }
+            }
+            for (final Method method : type.getDeclaredMethods()) {
+                if (isInjection(method) || method.isAnnotationPresent(Produces.class) || observes(method)) {
+                    requireParameters(method);
+                }
+            }
+        }
+    }
+
+    private static boolean isInjection(final AnnotatedElement element) {
+        return INJECTIONS.stream().anyMatch(element::isAnnotationPresent);
+    }
+
+    private static boolean observes(final Method method) {
+        return stream(method.getParameters()).anyMatch(it -> it.isAnnotationPresent(Observes.class));
+    }
+
+    private void requireParameters(final Executable executable) {
+        for (final Parameter parameter : executable.getParameters()) {
+            if (!parameter.isAnnotationPresent(Observes.class)) {
+                require(parameter.getParameterizedType(), executable);
+            }
+        }
+    }
+
+    private void require(final Type type, final Object injectionPoint) {
+        if (type instanceof Class) {
+            require((Class<?>) type, injectionPoint);
+        } else if (type instanceof ParameterizedType) {
+            final Type raw = ((ParameterizedType) type).getRawType();
+            if (raw == Instance.class || raw == Provider.class) {
+                require(((ParameterizedType) type).getActualTypeArguments()[0], injectionPoint);
+            } else if (raw != Event.class) {
+                require(raw, injectionPoint);
+            }
+        } else {
+            inconclusive = "cannot resolve " + type + " of " + injectionPoint;
+        }
+    }
+
+    private void require(final Class<?> type, final Object injectionPoint) {
+        if (type == Object.class || type == BeanManager.class) {
+            inconclusive = "cannot resolve " + type.getName() + " of " + injectionPoint;
+            return;
+        }
+        providers.getOrDefault(primitiveToWrapper(type).getName(), Collections.emptySet()).forEach(this::reach);
+    }
+}
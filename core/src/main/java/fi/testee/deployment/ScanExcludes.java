@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import org.jboss.weld.bootstrap.spi.BeansXml;
+import org.jboss.weld.bootstrap.spi.ClassAvailableActivation;
+import org.jboss.weld.bootstrap.spi.Filter;
+import org.jboss.weld.bootstrap.spi.Metadata;
+import org.jboss.weld.bootstrap.spi.Scanning;
+import org.jboss.weld.bootstrap.spi.SystemPropertyActivation;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The <code>&lt;scan&gt;&lt;exclude&gt;</code> filters of a <code>beans.xml</code>, evaluated against class
+ * names without loading the classes. Immutable and thus thread safe.
+ * <p>
+ * The activation conditions of the filters are evaluated once, when the excludes are created.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class ScanExcludes implements Predicate<String> {
+    private static final String PACKAGE = ".*";
+    private static final String PACKAGE_AND_SUBPACKAGES = ".**";
+    private static final String INVERTED = "!";
+
+    private final List<String> names;
+
+    private ScanExcludes(final List<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * Creates the excludes of a <code>beans.xml</code>.
+     *
+     * @param beansXml    the <code>beans.xml</code>.
+     * @param classLoader the class loader to check the availability of classes with.
+     * @return the active excludes.
+     */
+    static ScanExcludes of(final BeansXml beansXml, final ClassLoader classLoader) {
+        final Scanning scanning = beansXml.getScanning();
+        if (scanning == null) {
+            return new ScanExcludes(Collections.emptyList());
+        }
+        return new ScanExcludes(scanning.getExcludes().stream()
+                .map(Metadata::getValue)
+                .filter(it -> isActive(it, classLoader))
+                .map(Filter::getName)
+                .collect(toList()));
+    }
+
+    private static boolean isActive(final Filter filter, final ClassLoader classLoader) {
+        return allMatch(filter.getClassAvailableActivations(), it -> isActive(it, classLoader))
+                && allMatch(filter.getSystemPropertyActivations(), ScanExcludes::isActive);
+    }
+
+    private static <T> boolean allMatch(final Collection<Metadata<T>> activations, final Predicate<T> predicate) {
+        return activations == null || activations.stream().map(Metadata::getValue).allMatch(predicate);
+    }
+
+    private static boolean isActive(final ClassAvailableActivation activation, final ClassLoader classLoader) {
+        final String resource = activation.getClassName().replace('.', '/') + ".class";
+        return (classLoader.getResource(resource) != null) != activation.isInverted();
+    }
+
+    private static boolean isActive(final SystemPropertyActivation activation) {
+        final boolean nameInverted = activation.getName().startsWith(INVERTED);
+        final String value = System.getProperty(nameInverted
+                ? activation.getName().substring(INVERTED.length())
+                : activation.getName());
+        if (activation.getValue() == null) {
+            return (value != null) != nameInverted;
+        }
+        final boolean valueInverted = activation.getValue().startsWith(INVERTED);
+        final String expected = valueInverted
+                ? activation.getValue().substring(INVERTED.length())
+                : activation.getValue();
+        return value != null && expected.equals(value) != valueInverted;
+    }
+
+    /**
+     * Indicates if there are any active excludes.
+     *
+     * @return <code>true</code> if no class is excluded.
+     */
+    boolean isEmpty() {
+        return names.isEmpty();
+    }
+
+    /**
+     * Checks if a class is excluded from scanning.
+     *
+     * @param className the fully qualified name of the class.
+     * @return <code>true</code> if the class is excluded.
+     */
+    @Override
+    public boolean test(final String className) {
+        return names.stream().anyMatch(it -> matches(it, className));
+    }
+
+    private static boolean matches(final String name, final String className) {
+        if (name.endsWith(PACKAGE_AND_SUBPACKAGES)) {
+            final String packageName = name.substring(0, name.length() - PACKAGE_AND_SUBPACKAGES.length());
+            return packageOf(className).equals(packageName) || className.startsWith(packageName + ".");
+        }
+        if (name.endsWith(PACKAGE)) {
+            return packageOf(className).equals(name.substring(0, name.length() - PACKAGE.length()));
+        }
+        return name.equals(className);
+    }
+
+    private static String packageOf(final String className) {
+        final int separator = className.lastIndexOf('.');
+        return separator < 0 ? "" : className.substring(0, separator);
+    }
+}
@@ -22,11 +22,27 @@ import org.jboss.weld.bootstrap.spi.BeansXml;
 import org.jboss.weld.ejb.spi.EjbDescriptor;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.function.Function;
 
 import static java.util.stream.Collectors.toSet;
 
+/**
+ * Applies a {@link BeansXmlModifier} to a {@link BeanDeploymentArchive}.
+ * <p>
+ * The results of the modifiers are cached by modifier and <code>beans.xml</code> identity, so archives
+ * deployed several times with the same modifier instance don't apply it again. Callers should therefore
+ * reuse modifier instances instead of creating new ones per deployment.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
 public class WrappedBeanDeploymentArchive implements BeanDeploymentArchive {
+    // Keyed by identity, modifiers are expected to be reused (see BeansXmlModifierChain)
+    private static final Map<BeansXmlModifier, Map<BeansXml, BeansXml>> MODIFIED =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
     private final BeanDeploymentArchive delegate;
     private final BeansXmlModifier modifier;
     private final Function<BeanDeploymentArchive, BeanDeploymentArchive> mapper;
@@ -55,7 +71,12 @@ public class WrappedBeanDeploymentArchive implements BeanDeploymentArchive {
 
     @Override
     public BeansXml getBeansXml() {
-        return modifier.apply(delegate.getBeansXml());
+        final BeansXml beansXml = delegate.getBeansXml();
+        final Map<BeansXml, BeansXml> modified = MODIFIED.computeIfAbsent(
+                modifier,
+                it -> Collections.synchronizedMap(new IdentityHashMap<>())
+        );
+        return modified.computeIfAbsent(beansXml, modifier);
     }
 
     @Override
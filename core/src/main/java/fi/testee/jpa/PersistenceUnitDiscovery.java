@@ -198,7 +198,7 @@ public class PersistenceUnitDiscovery {
 
     private Map<String, PersistenceUnitInfoImpl> discover() {
         return beanArchiveDiscovery.getBeanArchives().stream()
-                .map(it -> new ImmutablePair<>(it, it.getClasspathEntry().findResource("META-INF/persistence.xml")))
+                .map(it -> new ImmutablePair<>(it, it.getClasspathEntry().getSummary().getResource("META-INF/persistence.xml")))
                 .filter(it -> it.getRight() != null)
                 .map(it -> unitsFrom(it.getLeft().getClasspathEntry(), it.getRight()))
                 .flatMap(Collection::stream)
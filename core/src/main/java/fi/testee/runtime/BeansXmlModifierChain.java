@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.runtime;
+
+import fi.testee.spi.BeansXmlModifier;
+import org.jboss.weld.bootstrap.spi.BeansXml;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static fi.testee.deployment.DeploymentImpl.UNMODIFIED;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Combines {@link BeansXmlModifier}s into a single modifier.
+ * <p>
+ * The modifiers are instantiated for each test instance, but the modified <code>beans.xml</code> files are
+ * cached by modifier identity. The chains are therefore canonicalized by the types of the modifiers they
+ * contain, which requires the modifiers to be stateless.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class BeansXmlModifierChain implements BeansXmlModifier {
+    private static final Map<List<Class<?>>, BeansXmlModifier> CHAINS = new ConcurrentHashMap<>();
+
+    private final List<BeansXmlModifier> modifiers;
+
+    private BeansXmlModifierChain(final List<BeansXmlModifier> modifiers) {
+        this.modifiers = modifiers;
+    }
+
+    /**
+     * Returns the chain applying the given modifiers, ordered by their type names.
+     *
+     * @param modifiers the modifiers to combine.
+     * @return the same instance for all collections of modifiers of the same types.
+     */
+    static BeansXmlModifier of(final Collection<BeansXmlModifier> modifiers) {
+        if (modifiers.isEmpty()) {
+            return UNMODIFIED;
+        }
+        final List<BeansXmlModifier> sorted = modifiers.stream()
+                .sorted(comparing(it -> it.getClass().getName()))
+                .collect(toList());
+        final List<Class<?>> types = sorted.stream()
+                .map(BeansXmlModifier::getClass)
+                .collect(toList());
+        return CHAINS.computeIfAbsent(types, it -> new BeansXmlModifierChain(new ArrayList<>(sorted)));
+    }
+
+    @Override
+    public BeansXml apply(final BeansXml beansXml) {
+        BeansXml ret = beansXml;
+        for (final BeansXmlModifier modifier : modifiers) {
+            ret = modifier.apply(ret);
+        }
+        return ret;
+    }
+}
@@ -19,27 +19,34 @@ import fi.testee.spi.DependencyInjection;
 import fi.testee.spi.ReleaseCallbackHandler;
 
 import java.util.Set;
-import java.util.function.Supplier;
+import java.util.function.Function;
 
 class DeferredDependencyInjection implements DependencyInjection {
-    private final Supplier<DependencyInjection> di;
+    // Plugins may call in on threads of their own, so the realm's scope is bound for each call
+    private final DependencyInjectionRealm realm;
+    // Resolves the dependency injection to use for a class
+    private final Function<Class<?>, DependencyInjection> di;
 
-    DeferredDependencyInjection(final Supplier<DependencyInjection> di) {
+    DeferredDependencyInjection(
+            final DependencyInjectionRealm realm,
+            final Function<Class<?>, DependencyInjection> di
+    ) {
+        this.realm = realm;
         this.di = di;
     }
 
     @Override
     public <T> Set<T> getInstancesOf(final Class<T> clazz, final ReleaseCallbackHandler releaser) {
-        return di.get().getInstancesOf(clazz, releaser);
+        return realm.activated(() -> di.apply(clazz).getInstancesOf(clazz, releaser));
     }
 
     @Override
     public <T> T getInstanceOf(final Class<T> clazz, final ReleaseCallbackHandler releaser) {
-        return di.get().getInstanceOf(clazz, releaser);
+        return realm.activated(() -> di.apply(clazz).getInstanceOf(clazz, releaser));
     }
 
     @Override
     public <T> void inject(final T o, final ReleaseCallbackHandler releaser) {
-        di.get().inject(o, releaser);
+        realm.activated(() -> di.apply(o.getClass()).inject(o, releaser));
     }
 }
@@ -17,7 +17,9 @@ package fi.testee.runtime;
 
 import fi.testee.deployment.BeanArchive;
 import fi.testee.deployment.BeanArchiveDiscovery;
+import fi.testee.config.TestEEfiConfiguration;
 import fi.testee.deployment.BeanDeploymentArchiveImpl;
+import fi.testee.deployment.DeploymentFingerprint;
 import fi.testee.deployment.DeploymentImpl;
 import fi.testee.exceptions.TestEEfiException;
 import fi.testee.services.TransactionServicesImpl;
@@ -26,16 +28,20 @@ import fi.testee.spi.DependencyInjection;
 import fi.testee.spi.DynamicArchiveContributor;
 import fi.testee.spi.ReleaseCallbackHandler;
 import org.jboss.weld.Container;
+import org.jboss.weld.ContainerState;
 import org.jboss.weld.bean.AbstractClassBean;
 import org.jboss.weld.bootstrap.WeldBootstrap;
 import org.jboss.weld.bootstrap.api.Bootstrap;
 import org.jboss.weld.bootstrap.api.Environments;
 import org.jboss.weld.bootstrap.api.ServiceRegistry;
+import org.jboss.weld.bootstrap.events.AfterDeploymentValidationImpl;
 import org.jboss.weld.bootstrap.spi.BeanDeploymentArchive;
 import org.jboss.weld.bootstrap.spi.Metadata;
 import org.jboss.weld.context.CreationalContextImpl;
 import org.jboss.weld.context.api.ContextualInstance;
+import org.jboss.weld.injection.producer.InjectionTargetService;
 import org.jboss.weld.manager.BeanManagerImpl;
+import org.jboss.weld.manager.api.ExecutorServices;
 import org.jboss.weld.transaction.spi.TransactionServices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,25 +52,46 @@ import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.Extension;
 import javax.enterprise.inject.spi.InjectionTarget;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
+import static java.util.stream.Collectors.collectingAndThen;
 import static java.util.stream.Collectors.toSet;
 
 /**
  * Wrapper around a Weld context.
+ * <p>
+ * Setting the {@link TestEEfiConfiguration configuration} key <code>testeefi.weld.validation</code> to
+ * <code>once</code> validates each {@link DeploymentFingerprint structurally distinct} deployment only the first
+ * time it is bootstrapped in this JVM. As soon as bootstrapping a container without validation fails, all
+ * containers are validated again. Skipping validation relies on Weld internals, so it's only done with the Weld
+ * version it was written against.</p>
  *
  * @author Alex Stockinger, IT-Stockinger
  */
 public class DependencyInjectionRealm implements DependencyInjection {
     private static final Logger LOG = LoggerFactory.getLogger(DependencyInjectionRealm.class);
-    private final String contextId = UUID.randomUUID().toString();
+    static final String VALIDATION = "testeefi.weld.validation";
+    // The Weld version whose WeldStartup.validateBeans() is mirrored by skipValidation()
+    private static final String VALIDATION_SKIPPABLE_WELD_VERSION = "2.4.3";
+    private static final boolean VALIDATION_SKIPPABLE = isValidationSkippable();
+    private static volatile boolean skippingValidationFailed;
     private final CreationalContextImpl<Object> rootContext = new CreationalContextImpl<>(null);
+    private String contextId = UUID.randomUUID().toString();
+    // The beans of a bootstrapped container don't change, so resolution results can be cached
+    private Map<Class<?>, Collection<Bean<?>>> beans = new ConcurrentHashMap<>();
+    private Map<Class<?>, Bean<?>> classBeans = new ConcurrentHashMap<>();
     private Bootstrap bootstrap;
     private DeploymentImpl deployment;
+    // Only set if attached to the container of another realm
+    private RealmScope scope;
 
     public DependencyInjectionRealm init(
             final ServiceRegistry serviceRegistry,
@@ -74,21 +101,129 @@ public class DependencyInjectionRealm implements DependencyInjection {
             final Collection<DynamicArchiveContributor> archiveContributors
     ) {
         LOG.trace("Starting dependency injection realm {}", contextId);
+        if (!serviceRegistry.contains(ExecutorServices.class)) {
+            // Sharing the runtime's thread pool and class file index, instead of setting them up per container
+            TestRuntime.instance().addSharedServices(serviceRegistry);
+        }
         deployment = new DeploymentImpl(
                 archiveContributors,
                 serviceRegistry,
                 extensions,
                 beansXmlModifier
         );
-        bootstrap = new WeldBootstrap()
+        final long start = System.nanoTime();
+        final Bootstrap weld = new WeldBootstrap()
                 .startContainer(contextId, environment, deployment)
                 .startInitialization()
-                .deployBeans()
-                .validateBeans()
-                .endInitialization();
+                .deployBeans();
+        final boolean skipped = validate(weld, environment);
+        try {
+            bootstrap = weld.endInitialization();
+        } catch (final RuntimeException e) {
+            if (skipped) {
+                disableSkippingValidation(e);
+            }
+            throw e;
+        }
+        RuntimeStatistics.instance().containerBootstrapped(System.nanoTime() - start);
+        return this;
+    }
+
+    /**
+     * Attaches the realm to the container of another realm instead of bootstrapping a container of its own. The
+     * container must have been bootstrapped with the {@link RealmScope.Extension} and the
+     * {@link RealmScope.RealmResourceInjectionServices}.
+     *
+     * @param container       the realm owning the container.
+     * @param serviceRegistry the services of this realm, providing the resource injection services.
+     * @return this realm.
+     */
+    DependencyInjectionRealm attach(final DependencyInjectionRealm container, final ServiceRegistry serviceRegistry) {
+        LOG.trace("Attaching dependency injection realm to {}", container.contextId);
+        contextId = container.contextId;
+        bootstrap = container.bootstrap;
+        deployment = container.deployment;
+        beans = container.beans;
+        classBeans = container.classBeans;
+        scope = new RealmScope(serviceRegistry);
         return this;
     }
 
+    /**
+     * Runs an action with the realm's scope bound to the current thread, which is required for anything creating
+     * framework beans if the realm is {@link #attach(DependencyInjectionRealm, ServiceRegistry) attached}.
+     *
+     * @param action the action to run.
+     * @param <T>    the result type.
+     * @return the result of the action.
+     */
+    <T> T activated(final Supplier<T> action) {
+        return scope == null ? action.get() : scope.call(action);
+    }
+
+    void activated(final Runnable action) {
+        activated(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private boolean validate(final Bootstrap weld, final Environments environment) {
+        final RuntimeStatistics statistics = RuntimeStatistics.instance();
+        final String fingerprint = validateOnce() ? DeploymentFingerprint.of(deployment, environment) : null;
+        if (fingerprint != null && statistics.isValidated(fingerprint)) {
+            LOG.trace("Skipping validation of dependency injection realm {}", contextId);
+            try {
+                skipValidation();
+            } catch (final RuntimeException e) {
+                disableSkippingValidation(e);
+                throw e;
+            }
+            statistics.validationSkipped(fingerprint);
+            return true;
+        }
+        final long start = System.nanoTime();
+        weld.validateBeans();
+        statistics.validated(fingerprint, System.nanoTime() - start);
+        return false;
+    }
+
+    private static boolean validateOnce() {
+        return VALIDATION_SKIPPABLE
+                && !skippingValidationFailed
+                && "once".equalsIgnoreCase(TestEEfiConfiguration.instance().get(VALIDATION, "always"));
+    }
+
+    private static boolean isValidationSkippable() {
+        // Weld declares e.g. "2.4.3" as specification and "Final" as implementation version
+        final Package weld = WeldBootstrap.class.getPackage();
+        final String version = weld == null ? null : weld.getSpecificationVersion();
+        if (VALIDATION_SKIPPABLE_WELD_VERSION.equals(version)
+                || (version != null && version.startsWith(VALIDATION_SKIPPABLE_WELD_VERSION + "."))) {
+            return true;
+        }
+        LOG.debug("Validating all containers, since skipping validation is not supported with Weld {}", version);
+        return false;
+    }
+
+    private static void disableSkippingValidation(final RuntimeException e) {
+        // Safety switch: make sure the next deployments report proper validation errors
+        LOG.warn("Bootstrapping a container without validation failed, validating all containers from now on", e);
+        skippingValidationFailed = true;
+        RuntimeStatistics.instance().forgetValidations();
+    }
+
+    // Everything WeldStartup.validateBeans() does, except for the actual validation
+    private void skipValidation() {
+        final Container container = container();
+        for (final BeanManagerImpl beanManager : container.beanDeploymentArchives().values()) {
+            beanManager.getBeanResolver().clear();
+            beanManager.getServices().get(InjectionTargetService.class).validate();
+        }
+        container.setState(ContainerState.VALIDATED);
+        AfterDeploymentValidationImpl.fire(container.deploymentManager());
+    }
+
     public BeanManagerImpl findArchiveFor(final Class<?> clazz) {
         final BeanDeploymentArchive beanDeploymentArchive = deployment.getBeanDeploymentArchive(clazz);
         assert beanDeploymentArchive != null : "Could not find bean deployment archive for " + clazz;
@@ -97,25 +232,41 @@ public class DependencyInjectionRealm implements DependencyInjection {
 
     void shutdown() {
         LOG.trace("Shutting down dependency injection realm {}", contextId);
+        if (scope != null) {
+            // The container is owned by another realm
+            activated(() -> rootContext.release());
+            scope.destroy();
+            return;
+        }
         rootContext.release();
+        beans.clear();
+        classBeans.clear();
         bootstrap.shutdown();
     }
 
-    private <T> Collection<Bean<T>> resolve(final Class<T> clazz) {
-        return deployment.getBeanDeploymentArchives().stream().map(bootstrap::getManager)
-                .map(archive -> beansOf(clazz, (BeanManagerImpl) archive))
-                .flatMap(Collection::stream)
-                .collect(toSet());
+    @SuppressWarnings("unchecked")
+    <T> Collection<Bean<T>> resolve(final Class<T> clazz) {
+        final Collection<?> cached = beans.get(clazz);
+        if (cached != null) {
+            return (Collection<Bean<T>>) cached;
+        }
+        final Collection<Bean<?>> ret = beansOf(clazz);
+        if (!ret.isEmpty()) {
+            // Failed lookups are not cached, they end up in an exception anyway
+            beans.putIfAbsent(clazz, ret);
+        }
+        return (Collection<Bean<T>>) (Collection<?>) ret;
     }
 
-    @SuppressWarnings("unchecked")
-    private <T> Set<Bean<T>> beansOf(
-            final Class<T> clazz,
-            final BeanManagerImpl beanManager
-    ) {
-        return beanManager.getBeans(clazz).stream()
-                .map(bean -> (Bean<T>) bean)
-                .collect(toSet());
+    boolean isCached(final Class<?> clazz) {
+        return beans.containsKey(clazz) || classBeans.containsKey(clazz);
+    }
+
+    private Collection<Bean<?>> beansOf(final Class<?> clazz) {
+        return deployment.getBeanDeploymentArchives().stream().map(bootstrap::getManager)
+                .map(archive -> ((BeanManagerImpl) archive).getBeans(clazz))
+                .flatMap(Collection::stream)
+                .collect(collectingAndThen(toSet(), Collections::unmodifiableSet));
     }
 
     private Container container() {
@@ -124,9 +275,9 @@ public class DependencyInjectionRealm implements DependencyInjection {
 
     @Override
     public <T> Set<T> getInstancesOf(final Class<T> clazz, final ReleaseCallbackHandler handler) {
-        return resolve(clazz).stream()
+        return activated(() -> resolve(clazz).stream()
                 .map(it -> newInstance(it, handler))
-                .collect(toSet());
+                .collect(toSet()));
     }
 
     private <T> T newInstance(final Bean<T> bean, final ReleaseCallbackHandler handler) {
@@ -175,7 +326,7 @@ public class DependencyInjectionRealm implements DependencyInjection {
     }
 
     ServiceRegistry getServiceRegistry() {
-        return container().services();
+        return scope == null ? container().services() : scope.getServiceRegistry();
     }
 
     private <T> Bean<T> resolveUnique(Class<T> clazz) {
@@ -206,11 +357,20 @@ public class DependencyInjectionRealm implements DependencyInjection {
 
     @SuppressWarnings("unchecked")
     private void withProducer(final Object o, final BiConsumer<Bean, InjectionTarget> consumer) {
-        final Bean<Object> bean = resolveUnique((Class<Object>) o.getClass());
+        final AbstractClassBean<?> bean = classBean(o.getClass());
+        activated(() -> consumer.accept(bean, bean.getProducer()));
+    }
+
+    AbstractClassBean<?> classBean(final Class<?> clazz) {
+        return (AbstractClassBean<?>) classBeans.computeIfAbsent(clazz, this::resolveClassBean);
+    }
+
+    private Bean<?> resolveClassBean(final Class<?> clazz) {
+        final Bean<?> bean = resolveUnique(clazz);
         if (!(bean instanceof AbstractClassBean)) {
             throw new TestEEfiException("Injection of " + bean + " is not supported");
         }
-        consumer.accept(bean, ((AbstractClassBean) bean).getProducer());
+        return bean;
     }
 
     <T> CreationalContextImpl<T> contextFor(final Contextual<T> ctx, ReleaseCallbackHandler handler) {
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.runtime;
+
+import org.jboss.weld.bootstrap.api.ServiceRegistry;
+import org.jboss.weld.injection.spi.ResourceInjectionServices;
+import org.jboss.weld.injection.spi.ResourceReferenceFactory;
+import org.jboss.weld.injection.spi.helpers.SimpleResourceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ContextNotActiveException;
+import javax.enterprise.context.spi.Context;
+import javax.enterprise.context.spi.Contextual;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.spi.AfterBeanDiscovery;
+import javax.enterprise.inject.spi.BeanAttributes;
+import javax.enterprise.inject.spi.InjectionPoint;
+import javax.enterprise.inject.spi.ProcessBeanAttributes;
+import javax.inject.Singleton;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The state a {@link DependencyInjectionRealm} keeps in the shared framework container: its singletons and its
+ * resource injection services. Thread safe.
+ * <p>
+ * A scope is bound to the current thread while its realm creates or injects framework beans. The
+ * {@link Extension} replaces {@link Singleton} with the {@link RealmScoped} pseudo scope, whose context stores the
+ * instances in the scope bound to the current thread. Resource injection is delegated to the realm bound to the
+ * current thread as well. The runtime binds the runtime scope while bootstrapping and shutting down, on any other
+ * thread without a bound scope the context is not active.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class RealmScope {
+    private static final Logger LOG = LoggerFactory.getLogger(RealmScope.class);
+    private static final ThreadLocal<RealmScope> ACTIVE = new ThreadLocal<>();
+    private static final RealmScope RUNTIME = new RealmScope(null);
+
+    private final ServiceRegistry serviceRegistry;
+    // In creation order, so the instances are destroyed in reverse order
+    private final Map<Contextual<?>, ScopedInstance<?>> instances = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param serviceRegistry the services of the realm, <code>null</code> for the runtime scope.
+     */
+    RealmScope(final ServiceRegistry serviceRegistry) {
+        this.serviceRegistry = serviceRegistry;
+    }
+
+    /**
+     * The scope of the realm owning the shared framework container, living as long as the runtime.
+     *
+     * @return the runtime scope.
+     */
+    static RealmScope runtime() {
+        return RUNTIME;
+    }
+
+    private static RealmScope current() {
+        final RealmScope ret = ACTIVE.get();
+        if (ret == null) {
+            throw new ContextNotActiveException("No realm scope bound to thread " + Thread.currentThread().getName());
+        }
+        return ret;
+    }
+
+    /**
+     * Runs an action with this scope bound to the current thread.
+     *
+     * @param action the action to run.
+     * @param <T>    the result type.
+     * @return the result of the action.
+     */
+    <T> T call(final Supplier<T> action) {
+        final RealmScope previous = ACTIVE.get();
+        ACTIVE.set(this);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                ACTIVE.remove();
+            } else {
+                ACTIVE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Runs an action with this scope bound to the current thread.
+     *
+     * @param action the action to run.
+     */
+    void run(final Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * The services of the realm.
+     *
+     * @return the service registry.
+     */
+    ServiceRegistry getServiceRegistry() {
+        return serviceRegistry;
+    }
+
+    private ResourceInjectionServices resourceInjectionServices() {
+        return serviceRegistry == null ? null : serviceRegistry.get(ResourceInjectionServices.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> T get(final Contextual<T> contextual, final CreationalContext<T> creationalContext) {
+        ScopedInstance<T> ret = (ScopedInstance<T>) instances.get(contextual);
+        if (ret == null) {
+            if (creationalContext == null) {
+                return null;
+            }
+            ret = new ScopedInstance<>(contextual, contextual.create(creationalContext), creationalContext);
+            instances.put(contextual, ret);
+        }
+        return ret.instance;
+    }
+
+    /**
+     * Destroys the instances of the scope.
+     */
+    void destroy() {
+        final List<ScopedInstance<?>> destroy;
+        synchronized (this) {
+            destroy = new ArrayList<>(instances.values());
+            instances.clear();
+        }
+        Collections.reverse(destroy);
+        destroy.forEach(it -> {
+            try {
+                it.destroy();
+            } catch (final RuntimeException e) {
+                LOG.warn("Failed to destroy {}", it.contextual, e);
+            }
+        });
+    }
+
+    private static final class ScopedInstance<T> {
+        private final Contextual<T> contextual;
+        private final T instance;
+        private final CreationalContext<T> creationalContext;
+
+        private ScopedInstance(
+                final Contextual<T> contextual,
+                final T instance,
+                final CreationalContext<T> creationalContext
+        ) {
+            this.contextual = contextual;
+            this.instance = instance;
+            this.creationalContext = creationalContext;
+        }
+
+        private void destroy() {
+            contextual.destroy(instance, creationalContext);
+        }
+    }
+
+    /**
+     * The CDI extension of the shared framework container, making the {@link Singleton singletons} realm scoped.
+     */
+    static final class Extension implements javax.enterprise.inject.spi.Extension {
+        public <T> void beanAttributes(final @Observes ProcessBeanAttributes<T> processBeanAttributes) {
+            final BeanAttributes<T> attributes = processBeanAttributes.getBeanAttributes();
+            if (attributes.getScope() == Singleton.class) {
+                processBeanAttributes.setBeanAttributes(new RealmScopedAttributes<>(attributes));
+            }
+        }
+
+        public void afterBeanDiscovery(final @Observes AfterBeanDiscovery afterBeanDiscovery) {
+            afterBeanDiscovery.addContext(new RealmContext());
+        }
+    }
+
+    private static final class RealmScopedAttributes<T> implements BeanAttributes<T> {
+        private final BeanAttributes<T> delegate;
+
+        private RealmScopedAttributes(final BeanAttributes<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Set<Type> getTypes() {
+            return delegate.getTypes();
+        }
+
+        @Override
+        public Set<Annotation> getQualifiers() {
+            return delegate.getQualifiers();
+        }
+
+        @Override
+        public Class<? extends Annotation> getScope() {
+            return RealmScoped.class;
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public Set<Class<? extends Annotation>> getStereotypes() {
+            return delegate.getStereotypes();
+        }
+
+        @Override
+        public boolean isAlternative() {
+            return delegate.isAlternative();
+        }
+    }
+
+    private static final class RealmContext implements Context {
+        @Override
+        public Class<? extends Annotation> getScope() {
+            return RealmScoped.class;
+        }
+
+        @Override
+        public <T> T get(final Contextual<T> contextual, final CreationalContext<T> creationalContext) {
+            return current().get(contextual, creationalContext);
+        }
+
+        @Override
+        public <T> T get(final Contextual<T> contextual) {
+            return current().get(contextual, null);
+        }
+
+        @Override
+        public boolean isActive() {
+            return ACTIVE.get() != null;
+        }
+    }
+
+    /**
+     * Resource injection services of the shared framework container, delegating to the resource injection services
+     * of the realm bound to the current thread. Resources are resolved to <code>null</code> for the runtime scope.
+     */
+    static final class RealmResourceInjectionServices implements ResourceInjectionServices {
+        @Override
+        public ResourceReferenceFactory<Object> registerResourceInjectionPoint(final InjectionPoint injectionPoint) {
+            return () -> {
+                final ResourceInjectionServices services = current().resourceInjectionServices();
+                return services == null
+                        ? new SimpleResourceReference<>(null)
+                        : services.registerResourceInjectionPoint(injectionPoint).createResource();
+            };
+        }
+
+        @Override
+        public ResourceReferenceFactory<Object> registerResourceInjectionPoint(
+                final String jndiName,
+                final String mappedName
+        ) {
+            return () -> {
+                final ResourceInjectionServices services = current().resourceInjectionServices();
+                return services == null
+                        ? new SimpleResourceReference<>(null)
+                        : services.registerResourceInjectionPoint(jndiName, mappedName).createResource();
+            };
+        }
+
+        @Override
+        public Object resolveResource(final InjectionPoint injectionPoint) {
+            throw new UnsupportedOperationException("Not implemented");
+        }
+
+        @Override
+        public Object resolveResource(final String jndiName, final String mappedName) {
+            throw new UnsupportedOperationException("Not implemented");
+        }
+
+        @Override
+        public void cleanup() {
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.runtime;
+
+import javax.inject.Scope;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Pseudo scope replacing {@link javax.inject.Singleton} in the shared framework container, so each
+ * {@link TestSetup} and each test instance sees singletons of its own. See {@link RealmScope}.
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+@Scope
+@Retention(RUNTIME)
+@Target({TYPE, METHOD, FIELD})
+@interface RealmScoped {
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.runtime;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics about the Weld containers bootstrapped and the test setups initialized in this JVM, logged as a
+ * summary when the {@link TestRuntime} shuts down. Thread safe.
+ * <p>
+ * Also remembers the fingerprints of the deployments validated so far, so validation can be skipped for
+ * structurally identical deployments.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+final class RuntimeStatistics {
+    private static final RuntimeStatistics INSTANCE = new RuntimeStatistics();
+
+    // The time it took to validate the deployment with the given fingerprint
+    private final Map<String, Long> validated = new ConcurrentHashMap<>();
+    private final AtomicLong containers = new AtomicLong();
+    private final AtomicLong bootstrapNanos = new AtomicLong();
+    private final AtomicLong validations = new AtomicLong();
+    private final AtomicLong validationNanos = new AtomicLong();
+    private final AtomicLong skippedValidations = new AtomicLong();
+    private final AtomicLong savedNanos = new AtomicLong();
+    private final AtomicLong testSetups = new AtomicLong();
+    private final AtomicLong testSetupsWithoutPersistence = new AtomicLong();
+
+    private RuntimeStatistics() {
+    }
+
+    /**
+     * The statistics of this JVM.
+     *
+     * @return the statistics.
+     */
+    static RuntimeStatistics instance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the bootstrap of a container.
+     *
+     * @param nanos the time it took to bootstrap the container, including validation.
+     */
+    void containerBootstrapped(final long nanos) {
+        containers.incrementAndGet();
+        bootstrapNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records the successful validation of a deployment.
+     *
+     * @param fingerprint the fingerprint of the deployment or <code>null</code> if not computed.
+     * @param nanos       the time it took to validate the deployment.
+     */
+    void validated(final String fingerprint, final long nanos) {
+        validations.incrementAndGet();
+        validationNanos.addAndGet(nanos);
+        if (fingerprint != null) {
+            validated.putIfAbsent(fingerprint, nanos);
+        }
+    }
+
+    /**
+     * Checks if a deployment with the given fingerprint has been validated successfully before.
+     *
+     * @param fingerprint the fingerprint of the deployment.
+     * @return <code>true</code> if the deployment has been validated before.
+     */
+    boolean isValidated(final String fingerprint) {
+        return validated.containsKey(fingerprint);
+    }
+
+    /**
+     * Records skipping the validation of a deployment validated before.
+     *
+     * @param fingerprint the fingerprint of the deployment.
+     */
+    void validationSkipped(final String fingerprint) {
+        skippedValidations.incrementAndGet();
+        savedNanos.addAndGet(validated.getOrDefault(fingerprint, 0L));
+    }
+
+    /**
+     * The number of containers bootstrapped without validation so far.
+     *
+     * @return the number of skipped validations.
+     */
+    long getSkippedValidations() {
+        return skippedValidations.get();
+    }
+
+    /**
+     * The number of test setups initialized so far.
+     *
+     * @return the number of test setups.
+     */
+    long getTestSetups() {
+        return testSetups.get();
+    }
+
+    /**
+     * The number of test setups initialized without database migrations and test data so far.
+     *
+     * @return the number of test setups that took the fast path.
+     */
+    long getTestSetupsWithoutPersistence() {
+        return testSetupsWithoutPersistence.get();
+    }
+
+    /**
+     * Records the initialization of a test setup.
+     *
+     * @param persistenceSetup <code>false</code> if the test setup took the fast path without database migrations
+     *                         and test data.
+     */
+    void testSetupInitialized(final boolean persistenceSetup) {
+        testSetups.incrementAndGet();
+        if (!persistenceSetup) {
+            testSetupsWithoutPersistence.incrementAndGet();
+        }
+    }
+
+    /**
+     * Forgets all validated deployments, so all deployments are validated again.
+     */
+    void forgetValidations() {
+        validated.clear();
+    }
+
+    @Override
+    public String toString() {
+        return containers.get() + " Weld containers bootstrapped in " + millis(bootstrapNanos) + "ms, "
+                + validations.get() + " validations in " + millis(validationNanos) + "ms, "
+                + skippedValidations.get() + " validations of " + validated.size()
+                + " known deployments skipped, saving an estimated " + millis(savedNanos) + "ms, "
+                + testSetupsWithoutPersistence.get() + " of " + testSetups.get()
+                + " test setups without database migrations or test data";
+    }
+
+    private static long millis(final AtomicLong nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos.get());
+    }
+}
@@ -58,6 +58,21 @@ public class TestDataSetup {
         setupTestData(setupClass, testDataSetupAccessors);
     }
 
+    /**
+     * Checks if a test setup class or one of its superclasses has a {@link TestData @TestData} method.
+     *
+     * @param setupClass the test setup class.
+     * @return <code>true</code> if there is test data to set up.
+     */
+    public static boolean hasTestData(final Class<?> setupClass) {
+        for (Class<?> currentClass = setupClass; currentClass != null; currentClass = currentClass.getSuperclass()) {
+            if (stream(currentClass.getDeclaredMethods()).anyMatch(it -> it.getAnnotation(TestData.class) != null)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static void setupTestData(final Class<?> setupClass, final Collection<Object> testDataSetupAccessors) {
         Class<?> currentClass = setupClass;
         final List<Method> methodsToInvoke = new ArrayList<>();
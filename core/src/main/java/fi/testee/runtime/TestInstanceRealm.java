@@ -15,9 +15,7 @@
  */
 package fi.testee.runtime;
 
-import fi.testee.deployment.BeanArchive;
-import fi.testee.deployment.BeanArchiveDiscovery;
-import fi.testee.deployment.BeanDeployment;
+import fi.testee.deployment.ContainerTemplate;
 import fi.testee.services.ResourceInjectionServicesImpl;
 import fi.testee.services.TransactionServicesImpl;
 import fi.testee.spi.BeansXmlModifier;
@@ -33,11 +31,12 @@ import fi.testee.spi.scope.TestSetupScope;
 import org.jboss.weld.bootstrap.api.Environments;
 import org.jboss.weld.bootstrap.api.ServiceRegistry;
 import org.jboss.weld.bootstrap.api.helpers.SimpleServiceRegistry;
-import org.jboss.weld.bootstrap.spi.BeansXml;
 import org.jboss.weld.bootstrap.spi.Metadata;
 import org.jboss.weld.injection.spi.ResourceInjectionServices;
 import org.jboss.weld.injection.spi.ResourceReferenceFactory;
 import org.jboss.weld.transaction.spi.TransactionServices;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.enterprise.inject.spi.Extension;
 import java.lang.annotation.Annotation;
@@ -46,6 +45,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 
 import static fi.testee.deployment.DeploymentImpl.UNMODIFIED;
 import static java.util.Arrays.asList;
@@ -53,50 +53,75 @@ import static java.util.Collections.emptySet;
 import static java.util.stream.Collectors.toSet;
 
 public class TestInstanceRealm extends DependencyInjectionRealm implements TestSetup.TestInstance {
+    private static final Logger LOG = LoggerFactory.getLogger(TestInstanceRealm.class);
     private final Releaser releaser = new Releaser();
     private TransactionalContext context;
     private String instanceId;
     private Object testInstance;
+    private ContainerTemplate applicationTemplate;
+    private Runnable pruningFallbackListener;
+    private Function<ContainerTemplate, TransactionalContext> contextFactory;
+    // Only set if a class pruned from the application container was requested
+    private TransactionalContext fallbackContext;
 
     public TestInstanceRealm init(
-            final BeanArchiveDiscovery beanArchiveDiscovery,
+            final TestRuntime runtime,
+            final ContainerTemplate frameworkTemplate,
+            final ContainerTemplate applicationTemplate,
+            final Runnable pruningFallbackListener,
             final String instanceId,
             final Object testInstance,
             final Method method,
             final Collection<ResourceProvider> setupResourceProviders
     ) {
-        final BeanDeployment beanDeployment = new BeanDeployment(beanArchiveDiscovery, BeanArchive::isFrameworkRelevant);
-        super.init(
-                serviceRegistry(resourceProviders(testInstance, method, setupResourceProviders)),
-                Environments.SE,
-                emptySet(),
-                UNMODIFIED,
-                asList(beanDeployment)
+        final ServiceRegistry serviceRegistry = serviceRegistry(
+                resourceProviders(testInstance, method, setupResourceProviders)
         );
+        if (runtime.isFrameworkContainerShared()) {
+            attach(runtime.getFrameworkRealm(), serviceRegistry);
+        } else {
+            super.init(
+                    serviceRegistry,
+                    Environments.SE,
+                    emptySet(),
+                    UNMODIFIED,
+                    asList(frameworkTemplate.beanDeployment())
+            );
+        }
         this.instanceId = instanceId;
         this.testInstance = testInstance;
+        this.applicationTemplate = applicationTemplate;
+        this.pruningFallbackListener = pruningFallbackListener;
+        activated(() -> initialize(method));
+        return this;
+    }
 
+    private void initialize(final Method method) {
         final Set<ResourceProvider> resourceProviders = getInstancesOf(ResourceProvider.class, releaser);
         final BeansXmlModifier beansXmlModifier = beansXmlModifiers();
         final Collection<Metadata<Extension>> extensions = instanceExtensions(method);
-        context = getInstanceOf(TransactionalContext.class, releaser);
         final Annotation[] scopes = {TestSetupScope.INSTANCE, TestInstanceScope.INSTANCE};
         final Collection<DynamicArchiveContributor> archiveContributors = getInstancesOf(
                 DynamicArchiveContributor.class,
                 releaser
         );
-        context.initialize(
-                extensions,
-                beansXmlModifier,
-                resourceProviders,
-                it -> true,
-                sessionBeanAlternatives(releaser),
-                archiveContributors,
-                scopes
-        );
+        final SessionBeanAlternatives sessionBeanAlternatives = sessionBeanAlternatives(releaser);
+        contextFactory = template -> {
+            final TransactionalContext ret = getInstanceOf(TransactionalContext.class, releaser);
+            ret.initialize(
+                    extensions,
+                    beansXmlModifier,
+                    resourceProviders,
+                    template,
+                    sessionBeanAlternatives,
+                    archiveContributors,
+                    scopes
+            );
+            return ret;
+        };
+        context = contextFactory.apply(applicationTemplate);
         context.getDependencyInjection().inject(testInstance, releaser);
         context.getDependencyInjection().postConstruct(testInstance);
-        return this;
     }
 
     private SessionBeanAlternatives sessionBeanAlternatives(final Releaser releaser) {
@@ -128,7 +153,33 @@ public class TestInstanceRealm extends DependencyInjectionRealm implements TestS
     }
 
     private DependencyInjection dependencyInjection() {
-        return new DeferredDependencyInjection(() -> context.getDependencyInjection());
+        return new DeferredDependencyInjection(
+                this,
+                it -> transactionalContextFor(it).getDependencyInjection()
+        );
+    }
+
+    // Classes pruned from the application container but requested nevertheless, e.g. by a plugin creating them
+    // on demand, are served by an additional container deploying all beans
+    private synchronized TransactionalContext transactionalContextFor(final Class<?> clazz) {
+        final ContainerTemplate unpruned = applicationTemplate.getUnpruned();
+        if (unpruned == applicationTemplate
+                || applicationTemplate.deploys(clazz.getName())
+                || !unpruned.deploys(clazz.getName())) {
+            return context;
+        }
+        if (fallbackContext == null) {
+            LOG.warn(
+                    "{} was pruned from the deployment of test instance {}, deploying all beans for it in an "
+                            + "additional container not sharing any instances with the test instance. Consider "
+                            + "contributing a PruningRootExtension for such classes.",
+                    clazz.getName(),
+                    instanceId
+            );
+            pruningFallbackListener.run();
+            fallbackContext = activated(() -> contextFactory.apply(unpruned));
+        }
+        return fallbackContext;
     }
 
     private Collection<Metadata<Extension>> instanceExtensions(final Method method) {
@@ -163,14 +214,19 @@ public class TestInstanceRealm extends DependencyInjectionRealm implements TestS
 
     @Override
     public <T> T create(final Class<T> clazz, final ReleaseCallbackHandler releaser) {
-        return context.getDependencyInjection().getInstanceOf(clazz, releaser);
+        return activated(() -> transactionalContextFor(clazz).getDependencyInjection().getInstanceOf(clazz, releaser));
     }
 
     @Override
     public void shutdown() {
-        context.flushEntityManagers();
-        context.getDependencyInjection().preDestroy(testInstance);
-        releaser.release();
+        activated(() -> {
+            context.flushEntityManagers();
+            if (fallbackContext != null) {
+                fallbackContext.flushEntityManagers();
+            }
+            context.getDependencyInjection().preDestroy(testInstance);
+            releaser.release();
+        });
         super.shutdown();
     }
 
@@ -181,13 +237,6 @@ public class TestInstanceRealm extends DependencyInjectionRealm implements TestS
 
 
     private BeansXmlModifier beansXmlModifiers() {
-        final Set<BeansXmlModifier> modifiers = getInstancesOf(BeansXmlModifier.class, releaser);
-        return beansXml -> {
-            BeansXml ret = beansXml;
-            for (final BeansXmlModifier modifier : modifiers) {
-                ret = modifier.apply(ret);
-            }
-            return ret;
-        };
+        return BeansXmlModifierChain.of(getInstancesOf(BeansXmlModifier.class, releaser));
     }
 }
@@ -18,30 +18,67 @@ package fi.testee.runtime;
 import fi.testee.deployment.BeanArchive;
 import fi.testee.deployment.BeanArchiveDiscovery;
 import fi.testee.deployment.BeanDeployment;
+import fi.testee.config.TestEEfiConfiguration;
+import fi.testee.services.ClassFileServicesImpl;
+import fi.testee.services.ExecutorServicesImpl;
+import fi.testee.services.ExternalConfigurationImpl;
 import fi.testee.services.TransactionServicesImpl;
 import fi.testee.spi.Releaser;
 import fi.testee.spi.RuntimeLifecycleListener;
 import org.jboss.weld.bootstrap.api.ServiceRegistry;
 import org.jboss.weld.bootstrap.api.helpers.SimpleServiceRegistry;
+import org.jboss.weld.bootstrap.spi.Metadata;
+import org.jboss.weld.bootstrap.spi.helpers.MetadataImpl;
+import org.jboss.weld.configuration.spi.ExternalConfiguration;
+import org.jboss.weld.injection.spi.ResourceInjectionServices;
+import org.jboss.weld.manager.api.ExecutorServices;
+import org.jboss.weld.resources.spi.ClassFileServices;
 import org.jboss.weld.transaction.spi.TransactionServices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.enterprise.inject.spi.Extension;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static fi.testee.deployment.DeploymentImpl.UNMODIFIED;
 import static java.util.Arrays.asList;
-import static java.util.Collections.emptySet;
 import static org.jboss.weld.bootstrap.api.Environments.SE;
 
 /**
  * The holder of the static test runtime context. The class is thread safe.
+ * <p>
+ * Setting the {@link TestEEfiConfiguration configuration} key <code>testeefi.weld.sharedFrameworkContainer</code>
+ * to <code>true</code> makes test setups and test instances {@link DependencyInjectionRealm#attach(
+ * DependencyInjectionRealm, ServiceRegistry) attach} to the framework container of the runtime instead of
+ * bootstrapping framework containers of their own. Their {@link javax.inject.Singleton singletons} and resources
+ * are kept apart by {@link RealmScope realm scopes}, while framework beans of normal scopes like
+ * {@link javax.enterprise.context.ApplicationScoped} are shared.</p>
+ * <p>
+ * Setting the configuration key <code>testeefi.runtime.warmUp</code> to <code>true</code> makes the test framework
+ * integrations start creating the runtime on a background thread as soon as they are loaded, see
+ * {@link #warmUp()}.</p>
+ * <p>
+ * Weld itself is configured by the configuration keys starting with <code>org.jboss.weld.</code>, see
+ * {@link ExternalConfigurationImpl}.</p>
  *
  * @author Alex Stockinger, IT-Stockinger
  */
 public class TestRuntime {
     private static final Logger LOG = LoggerFactory.getLogger(TestRuntime.class);
+    static final String SHARED_FRAMEWORK_CONTAINER = "testeefi.weld.sharedFrameworkContainer";
+    static final String WARM_UP = "testeefi.runtime.warmUp";
+    private static final AtomicBoolean WARM_UP_STARTED = new AtomicBoolean();
     private static TestRuntime instance;
 
     private final BeanArchiveDiscovery beanArchiveDiscovery = new BeanArchiveDiscovery();
+    private final ExecutorServicesImpl executorServices = ExecutorServicesImpl.fromConfiguration();
+    private final ExternalConfigurationImpl weldConfiguration = ExternalConfigurationImpl.fromConfiguration();
+    private final ClassFileServicesImpl classFileServices = TestEEfiConfiguration.instance()
+            .getBoolean(ClassFileServicesImpl.ENABLED, true) ? new ClassFileServicesImpl(beanArchiveDiscovery) : null;
+    private final boolean frameworkContainerShared = TestEEfiConfiguration.instance()
+            .getBoolean(SHARED_FRAMEWORK_CONTAINER, false);
     private final DependencyInjectionRealm realm;
     private final Releaser releaser = new Releaser();
 
@@ -57,29 +94,108 @@ public class TestRuntime {
         return instance;
     }
 
+    /**
+     * Starts creating the singleton on a background thread, if enabled in the configuration. Meant to be called
+     * by test framework integrations as early as possible, so the first test only blocks on whatever is still
+     * unfinished when it calls {@link #instance()}. Only the first call has an effect.
+     */
+    public static void warmUp() {
+        startWarmUp();
+    }
+
+    /**
+     * Starts creating the singleton on a background thread, if enabled and not started before.
+     *
+     * @return the warm-up thread or <code>null</code> if no warm-up was started.
+     */
+    static Thread startWarmUp() {
+        if (!TestEEfiConfiguration.instance().getBoolean(WARM_UP, false)
+                || !WARM_UP_STARTED.compareAndSet(false, true)) {
+            return null;
+        }
+        final Thread thread = new Thread(() -> {
+            final long start = System.nanoTime();
+            try {
+                instance();
+                LOG.debug("Warmed up the runtime in {}ms", (System.nanoTime() - start) / 1_000_000);
+            } catch (final RuntimeException | LinkageError e) {
+                // The first test will try again and report the error
+                LOG.debug("Failed to warm up the runtime", e);
+            }
+        }, "TestEE.fi-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
     private TestRuntime() {
         final ServiceRegistry serviceRegistry = new SimpleServiceRegistry();
         serviceRegistry.add(TransactionServices.class, new TransactionServicesImpl());
+        addSharedServices(serviceRegistry);
+        final Collection<Metadata<Extension>> extensions = new HashSet<>();
+        if (frameworkContainerShared) {
+            serviceRegistry.add(ResourceInjectionServices.class, new RealmScope.RealmResourceInjectionServices());
+            extensions.add(new MetadataImpl<>(new RealmScope.Extension(), "TestEE.fi-realmScope"));
+        }
         final BeanDeployment beanDeployment = new BeanDeployment(beanArchiveDiscovery, BeanArchive::isFrameworkRelevant);
-        realm = new DependencyInjectionRealm().init(
+        // The runtime's own realm has no scope of its own, so the runtime scope is bound while it creates beans
+        realm = RealmScope.runtime().call(() -> new DependencyInjectionRealm().init(
                 serviceRegistry,
                 SE,
-                emptySet(),
+                extensions,
                 UNMODIFIED,
                 asList(beanDeployment)
-        );
+        ));
         Runtime.getRuntime().addShutdownHook(new Thread() {
             @Override
             public void run() {
-                releaser.release();
+                RealmScope.runtime().run(releaser::release);
+                RealmScope.runtime().destroy();
                 realm.shutdown();
+                executorServices.shutdown();
+                beanArchiveDiscovery.close();
+                LOG.info("TestEE.fi summary: {}", RuntimeStatistics.instance());
             }
         });
         LOG.trace("Notifying runtime lifecycle listeners about start");
-        realm.getInstancesOf(RuntimeLifecycleListener.class, releaser).forEach(RuntimeLifecycleListener::onRuntimeStarted);
+        RealmScope.runtime().run(() -> realm.getInstancesOf(RuntimeLifecycleListener.class, releaser)
+                .forEach(RuntimeLifecycleListener::onRuntimeStarted));
     }
 
     public BeanArchiveDiscovery getBeanArchiveDiscorvery() {
         return beanArchiveDiscovery;
     }
+
+    /**
+     * Checks if test setups and test instances share the framework container of the runtime.
+     *
+     * @return <code>true</code> if the framework container is shared.
+     */
+    boolean isFrameworkContainerShared() {
+        return frameworkContainerShared;
+    }
+
+    /**
+     * The realm owning the framework container of the runtime.
+     *
+     * @return the realm.
+     */
+    DependencyInjectionRealm getFrameworkRealm() {
+        return realm;
+    }
+
+    /**
+     * Adds the Weld services shared by all containers to a service registry.
+     *
+     * @param serviceRegistry the service registry of a container.
+     */
+    void addSharedServices(final ServiceRegistry serviceRegistry) {
+        serviceRegistry.add(ExecutorServices.class, executorServices);
+        if (!weldConfiguration.isEmpty()) {
+            serviceRegistry.add(ExternalConfiguration.class, weldConfiguration);
+        }
+        if (classFileServices != null) {
+            serviceRegistry.add(ClassFileServices.class, classFileServices);
+        }
+    }
 }
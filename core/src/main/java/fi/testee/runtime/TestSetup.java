@@ -15,9 +15,10 @@
  */
 package fi.testee.runtime;
 
+import fi.testee.config.TestEEfiConfiguration;
 import fi.testee.deployment.BeanArchive;
 import fi.testee.deployment.BeanArchiveDiscovery;
-import fi.testee.deployment.BeanDeployment;
+import fi.testee.deployment.ContainerTemplate;
 import fi.testee.jdbc.ConnectionFactoryManager;
 import fi.testee.jdbc.TestDataSource;
 import fi.testee.services.ResourceInjectionServicesImpl;
@@ -49,6 +50,7 @@ import static fi.testee.deployment.DeploymentImpl.UNMODIFIED;
 import static fi.testee.runtime.ManualResourceProviderBuilder.manualResourceProvider;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptySet;
+import static java.util.stream.Collectors.toSet;
 
 /**
  * Setup for a test. It contains the state shared by all instances of the test setup.
@@ -62,6 +64,8 @@ public class TestSetup extends DependencyInjectionRealm {
     private final Class<?> setupClass;
     private final TestRuntime runtime;
     private final Releaser setupReleaser = new Releaser();
+    private ContainerTemplate frameworkTemplate;
+    private volatile ContainerTemplate applicationTemplate;
 
     public interface TestInstance {
         <T> T create(Class<T> clazz, ReleaseCallbackHandler releaser);
@@ -80,40 +84,61 @@ public class TestSetup extends DependencyInjectionRealm {
     }
 
     public TestSetup init() {
+        final BeanArchiveDiscovery beanArchiveDiscovery = runtime.getBeanArchiveDiscorvery();
+        // Selected once, as every test instance bootstraps containers for the same bean archives
+        frameworkTemplate = new ContainerTemplate(beanArchiveDiscovery, BeanArchive::isFrameworkRelevant);
+        final ContainerTemplate template = new ContainerTemplate(beanArchiveDiscovery, it -> true);
+        applicationTemplate = TestEEfiConfiguration.instance().getBoolean(ContainerTemplate.PRUNING, false)
+                ? template.prunedTo(setupClass)
+                : template;
         final SimpleServiceRegistry serviceRegistry = new SimpleServiceRegistry();
         final TransactionServicesImpl transactionServices = new TransactionServicesImpl();
         final ResourceProvider setupResources = createSetupResources(transactionServices, false);
         serviceRegistry.add(ResourceInjectionServices.class, new ResourceInjectionServicesImpl(asList(setupResources)));
         serviceRegistry.add(TransactionServicesImpl.class, transactionServices);
-        final BeanArchiveDiscovery beanArchiveDiscovery = runtime.getBeanArchiveDiscorvery();
-        final BeanDeployment beanDeployment = new BeanDeployment(beanArchiveDiscovery, BeanArchive::isFrameworkRelevant);
-        super.init(
-                serviceRegistry,
-                Environments.SE,
-                emptySet(),
-                UNMODIFIED,
-                asList(beanDeployment)
-        );
-        setupTestData(setupResources);
+        if (runtime.isFrameworkContainerShared()) {
+            attach(runtime.getFrameworkRealm(), serviceRegistry);
+        } else {
+            runtime.addSharedServices(serviceRegistry);
+            super.init(
+                    serviceRegistry,
+                    Environments.SE,
+                    emptySet(),
+                    UNMODIFIED,
+                    asList(frameworkTemplate.beanDeployment())
+            );
+        }
+        activated(() -> setupTestData(setupResources));
         return this;
     }
 
     private void setupTestData(final ResourceProvider setupResources) {
         try {
             final Releaser testDataReleaser = new Releaser();
+            final Set<DataSourceMigrator> migrators = getInstancesOf(DataSourceMigrator.class, testDataReleaser)
+                    .stream()
+                    .filter(it -> it.isApplicable(setupClass))
+                    .collect(toSet());
+            final boolean persistenceSetup = !migrators.isEmpty() || TestDataSetup.hasTestData(setupClass);
+            RuntimeStatistics.instance().testSetupInitialized(persistenceSetup);
+            if (!persistenceSetup) {
+                // Fast path: no need for a transactional context if there is nothing to migrate or set up
+                LOG.debug("No database migrations or test data for {}", setupClass.getName());
+                testDataReleaser.release();
+                return;
+            }
             final TransactionalContext context = getInstanceOf(TransactionalContext.class, testDataReleaser);
             final Annotation[] scopes = {TestSetupScope.INSTANCE};
             context.initialize(
                     emptySet(),
                     UNMODIFIED,
                     asList(setupResources),
-                    BeanArchive::isFrameworkRelevant,
+                    frameworkTemplate,
                     type -> null,
                     emptySet(),
                     scopes
             );
             try {
-                final Set<DataSourceMigrator> migrators = getInstancesOf(DataSourceMigrator.class, testDataReleaser);
                 final ServiceRegistry serviceRegistry = context.getDependencyInjection().getServiceRegistry();
                 DatabaseMigration.migrateDataSources(setupClass, migrators, serviceRegistry);
                 getInstanceOf(TestDataSetup.class, testDataReleaser).setupTestData(setupClass, serviceRegistry);
@@ -143,7 +168,7 @@ public class TestSetup extends DependencyInjectionRealm {
     }
 
     private DependencyInjection testSetupDependencyInjection() {
-        return new DeferredDependencyInjection(() -> this);
+        return new DeferredDependencyInjection(this, it -> this);
     }
 
     private synchronized ConnectionFactory connectionFactoryManager(TestDataSource testDataSource) {
@@ -156,19 +181,30 @@ public class TestSetup extends DependencyInjectionRealm {
 
     public TestInstance prepareTestInstance(final String id, final Object testInstance, final Method method) {
         LOG.debug("Instantiating test run '{}' for class {}", id, testInstance.getClass().getName());
+        final long start = System.nanoTime();
         final TestInstanceRealm context = new TestInstanceRealm();
-        return context.init(
-                runtime.getBeanArchiveDiscorvery(),
+        final TestInstanceRealm ret = context.init(
+                runtime,
+                frameworkTemplate,
+                applicationTemplate,
+                this::abandonPruning,
                 id,
                 testInstance,
                 method,
                 asList(createSetupResources(getServiceRegistry().get(TransactionServicesImpl.class), true))
         );
+        LOG.debug("Instantiated test run '{}' in {}ms", id, (System.nanoTime() - start) / 1_000_000);
+        return ret;
+    }
+
+    // A test instance requested a class pruned from its deployment, so subsequent instances deploy all beans
+    private void abandonPruning() {
+        applicationTemplate = applicationTemplate.getUnpruned();
     }
 
     @Override
     public void shutdown() {
-        setupReleaser.release();
+        activated(() -> setupReleaser.release());
         super.shutdown();
     }
 }
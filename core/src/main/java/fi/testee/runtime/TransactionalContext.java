@@ -15,9 +15,9 @@
  */
 package fi.testee.runtime;
 
-import fi.testee.deployment.BeanArchive;
 import fi.testee.deployment.BeanArchiveDiscovery;
 import fi.testee.deployment.BeanDeployment;
+import fi.testee.deployment.ContainerTemplate;
 import fi.testee.deployment.EjbDescriptorImpl;
 import fi.testee.deployment.InterceptorChain;
 import fi.testee.ejb.EjbContainer;
@@ -26,7 +26,6 @@ import fi.testee.exceptions.TestEEfiException;
 import fi.testee.jpa.PersistenceUnitDiscovery;
 import fi.testee.services.EjbInjectionServicesImpl;
 import fi.testee.services.EjbServicesImpl;
-import fi.testee.services.ExecutorServicesImpl;
 import fi.testee.services.JpaInjectionServicesImpl;
 import fi.testee.services.ProxyServicesImpl;
 import fi.testee.services.ResourceInjectionServicesImpl;
@@ -50,7 +49,6 @@ import org.jboss.weld.injection.spi.JpaInjectionServices;
 import org.jboss.weld.injection.spi.ResourceInjectionServices;
 import org.jboss.weld.injection.spi.ResourceReference;
 import org.jboss.weld.manager.BeanManagerImpl;
-import org.jboss.weld.manager.api.ExecutorServices;
 import org.jboss.weld.security.spi.SecurityServices;
 import org.jboss.weld.serialization.spi.ProxyServices;
 import org.jboss.weld.transaction.spi.TransactionServices;
@@ -70,13 +68,11 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Predicate;
 
 import static fi.testee.deployment.BeanDeployment.and;
 import static fi.testee.utils.InjectionPointUtils.injectionPointOf;
 import static java.util.Arrays.asList;
 import static java.util.Arrays.stream;
-import static java.util.stream.Collectors.toMap;
 
 /**
  * A transactional context.
@@ -102,20 +98,13 @@ public class TransactionalContext {
             final Collection<Metadata<Extension>> extensions,
             final BeansXmlModifier beansXmlModifier,
             final Collection<ResourceProvider> setupResolvers,
-            final Predicate<BeanArchive> archiveFilter,
+            final ContainerTemplate template,
             final SessionBeanAlternatives sessionBeanAlternatives,
             final Collection<DynamicArchiveContributor> archiveContributors,
             final Annotation... scopes
     ) {
         LOG.debug("Initializing new transactional context");
-        Map<EjbDescriptor<?>, EjbDescriptorImpl<?>> ejbDescriptors = beanArchiveDiscovery.getBeanArchives().stream()
-                .filter(archiveFilter)
-                .map(BeanArchive::getEjbs)
-                .flatMap(Collection::stream)
-                .collect(toMap(
-                        it -> it,
-                        it -> it
-                ));
+        final Map<EjbDescriptor<?>, EjbDescriptorImpl<?>> ejbDescriptors = template.getEjbDescriptors();
         ejbContainer = new EjbContainer(ejbDescriptors.keySet());
         final Set<ResourceProvider> resourceProviders = new HashSet<>(setupResolvers);
         stream(scopes).forEach(it -> resourceProvidersInstance.select(it).forEach(resourceProviders::add));
@@ -128,7 +117,7 @@ public class TransactionalContext {
                 ejbContainer::createInstance,
                 propertyContributor()
         );
-        final BeanDeployment beanDeployment = new BeanDeployment(beanArchiveDiscovery, archiveFilter);
+        final BeanDeployment beanDeployment = template.beanDeployment();
         realm = new DependencyInjectionRealm().init(
                 instanceServiceRegistry,
                 Environments.EE_INJECT,
@@ -247,7 +236,6 @@ public class TransactionalContext {
         serviceRegistry.add(TransactionServices.class, new TransactionServicesImpl());
         serviceRegistry.add(SecurityServices.class, new SecurityServicesImpl());
         serviceRegistry.add(ProxyServices.class, new ProxyServicesImpl());
-        serviceRegistry.add(ExecutorServices.class, new ExecutorServicesImpl());
         serviceRegistry.add(EjbServices.class, new EjbServicesImpl(ejbFactory));
         return serviceRegistry;
     }
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.services;
+
+import fi.testee.classpath.ClassHeader;
+import fi.testee.classpath.ClasspathResource;
+import fi.testee.deployment.BeanArchive;
+import fi.testee.deployment.BeanArchiveDiscovery;
+import fi.testee.exceptions.TestEEfiException;
+import org.apache.commons.io.IOUtils;
+import org.jboss.weld.resources.spi.ClassFileInfo;
+import org.jboss.weld.resources.spi.ClassFileInfoException;
+import org.jboss.weld.resources.spi.ClassFileServices;
+
+import javax.enterprise.inject.Vetoed;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class file services, allowing Weld to decide which classes of the bean archives are relevant without
+ * loading them. Thread safe.
+ * <p>
+ * The {@link ClassHeader headers} of the classes are read from the class files, which are looked up in the
+ * bean archives found by the {@link BeanArchiveDiscovery}. A single instance is shared by all Weld
+ * containers, so each class file is parsed only once. Can be disabled by setting the
+ * {@link fi.testee.config.TestEEfiConfiguration configuration} key
+ * <code>testeefi.weld.classFileServices</code> to <code>false</code>, Weld then falls back to reflection.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+public class ClassFileServicesImpl implements ClassFileServices {
+    public static final String ENABLED = "testeefi.weld.classFileServices";
+    private static final String OBJECT = Object.class.getName();
+    private static final String INJECT = Inject.class.getName();
+    private static final String VETOED = Vetoed.class.getName();
+
+    private final BeanArchiveDiscovery beanArchiveDiscovery;
+    private final ClassLoader classLoader = ClassFileServicesImpl.class.getClassLoader();
+    private final Map<String, ClassHeader> headers = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> vetoedPackages = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param beanArchiveDiscovery the bean archive discovery to look up the class files in.
+     */
+    public ClassFileServicesImpl(final BeanArchiveDiscovery beanArchiveDiscovery) {
+        this.beanArchiveDiscovery = beanArchiveDiscovery;
+    }
+
+    @Override
+    public ClassFileInfo getClassFileInfo(final String className) {
+        return new ClassFileInfoImpl(header(className));
+    }
+
+    private ClassHeader header(final String className) {
+        return headers.computeIfAbsent(className, this::readHeader);
+    }
+
+    private ClassHeader readHeader(final String className) {
+        final byte[] classFile = classFile(className);
+        if (classFile == null) {
+            throw new ClassFileInfoException("Class file of " + className + " not found");
+        }
+        try {
+            return ClassHeader.read(ByteBuffer.wrap(classFile));
+        } catch (final TestEEfiException e) {
+            throw new ClassFileInfoException("Failed to read class file of " + className, e);
+        }
+    }
+
+    private byte[] classFile(final String className) {
+        final String name = className.replace('.', '/') + ".class";
+        try {
+            final BeanArchive beanArchive = beanArchiveDiscovery.findBeanArchive(className);
+            final ClasspathResource resource = beanArchive == null
+                    ? null
+                    : beanArchive.getClasspathEntry().findResource(name);
+            if (resource != null) {
+                return resource.getBytes();
+            }
+            // Not part of a bean archive, e.g. a superclass from a library
+            try (final InputStream in = classLoader.getResourceAsStream(name)) {
+                return in == null ? null : IOUtils.toByteArray(in);
+            }
+        } catch (final IOException e) {
+            throw new ClassFileInfoException("Failed to read class file of " + className, e);
+        }
+    }
+
+    private boolean containsAnnotation(final ClassHeader header, final Class<? extends Annotation> annotationType) {
+        if (header.getAnnotations().contains(annotationType.getName())) {
+            return true;
+        }
+        if (header.getAnnotations().stream().anyMatch(it -> isMetaAnnotated(it, annotationType))) {
+            return true;
+        }
+        final String superclassName = header.getSuperclassName();
+        return superclassName != null
+                && !OBJECT.equals(superclassName)
+                && containsAnnotation(header(superclassName), annotationType);
+    }
+
+    private boolean isMetaAnnotated(final String annotation, final Class<? extends Annotation> annotationType) {
+        try {
+            return Class.forName(annotation, false, classLoader).isAnnotationPresent(annotationType);
+        } catch (final ClassNotFoundException e) {
+            // Annotations missing at runtime are ignored by the JVM as well
+            return false;
+        }
+    }
+
+    private boolean isAssignableTo(final String className, final Class<?> type) {
+        if (type == Object.class || type.getName().equals(className)) {
+            return true;
+        }
+        final ClassHeader header = header(className);
+        if (header.getSuperclassName() != null && isAssignableTo(header.getSuperclassName(), type)) {
+            return true;
+        }
+        return header.getInterfaceNames().stream().anyMatch(it -> isAssignableTo(it, type));
+    }
+
+    private static boolean isSubtype(final Class<?> type, final String className) {
+        if (type == null) {
+            return false;
+        }
+        if (type.getName().equals(className) || isSubtype(type.getSuperclass(), className)) {
+            return true;
+        }
+        for (final Class<?> it : type.getInterfaces()) {
+            if (isSubtype(it, className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isVetoedPackage(final String className) {
+        final int separator = className.lastIndexOf('.');
+        if (separator < 0) {
+            return false;
+        }
+        return vetoedPackages.computeIfAbsent(className.substring(0, separator), packageName -> {
+            try {
+                return header(packageName + ".package-info").getDeclaredAnnotations().contains(VETOED);
+            } catch (final ClassFileInfoException e) {
+                // No package-info
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public void cleanupAfterBoot() {
+        // Shared by all containers
+    }
+
+    @Override
+    public void cleanup() {
+        // Shared by all containers
+    }
+
+    private final class ClassFileInfoImpl implements ClassFileInfo {
+        private final ClassHeader header;
+
+        private ClassFileInfoImpl(final ClassHeader header) {
+            this.header = header;
+        }
+
+        @Override
+        public String getClassName() {
+            return header.getClassName();
+        }
+
+        @Override
+        public String getSuperclassName() {
+            return header.getSuperclassName();
+        }
+
+        @Override
+        public boolean isAnnotationDeclared(final Class<? extends Annotation> annotationType) {
+            return header.getDeclaredAnnotations().contains(annotationType.getName());
+        }
+
+        @Override
+        public boolean containsAnnotation(final Class<? extends Annotation> annotationType) {
+            return ClassFileServicesImpl.this.containsAnnotation(header, annotationType);
+        }
+
+        @Override
+        public int getModifiers() {
+            return header.getModifiers();
+        }
+
+        @Override
+        public boolean hasCdiConstructor() {
+            return header.hasNoArgsConstructor() || header.getConstructorAnnotations().contains(INJECT);
+        }
+
+        @Override
+        public boolean isAssignableFrom(final Class<?> javaClass) {
+            return isSubtype(javaClass, header.getClassName());
+        }
+
+        @Override
+        public boolean isAssignableTo(final Class<?> javaClass) {
+            return ClassFileServicesImpl.this.isAssignableTo(header.getClassName(), javaClass);
+        }
+
+        @Override
+        public boolean isVetoed() {
+            return header.getDeclaredAnnotations().contains(VETOED) || isVetoedPackage(header.getClassName());
+        }
+
+        @Override
+        public boolean isTopLevelClass() {
+            return getNestingType() == NestingType.TOP_LEVEL;
+        }
+
+        @Override
+        public NestingType getNestingType() {
+            switch (header.getNestingKind()) {
+                case MEMBER:
+                    return NestingType.NESTED_MEMBER;
+                case LOCAL:
+                    return NestingType.NESTED_LOCAL;
+                case ANONYMOUS:
+                    return NestingType.NESTED_ANONYMOUS;
+                default:
+                    return NestingType.TOP_LEVEL;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ClassFileInfoImpl{" +
+                    "className='" + header.getClassName() + '\'' +
+                    '}';
+        }
+    }
+}
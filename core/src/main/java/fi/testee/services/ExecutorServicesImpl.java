@@ -15,13 +15,85 @@
  */
 package fi.testee.services;
 
-import org.jboss.weld.executor.SingleThreadExecutorServices;
+import fi.testee.config.TestEEfiConfiguration;
+import org.jboss.weld.executor.AbstractExecutorServices;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Executor services.
+ * Executor services, used by Weld for deploying and validating beans concurrently. Thread safe.
+ * <p>
+ * A single instance is shared by all Weld containers of the {@link fi.testee.runtime.TestRuntime test runtime},
+ * so the thread pool outlives the containers: it's only shut down by {@link #shutdown()}, not when a
+ * container {@link #cleanup() cleans up} its services. The pool consists of daemon threads, its size can be
+ * configured via the {@link TestEEfiConfiguration configuration} key <code>testeefi.weld.threads</code> and
+ * defaults to the number of available processors.</p>
  *
  * @author Alex Stockinger, IT-Stockinger
  */
-public class ExecutorServicesImpl extends SingleThreadExecutorServices {
-    // TODO find out what this is supposed to do and how it's supposed to behave in ITests.
+public class ExecutorServicesImpl extends AbstractExecutorServices {
+    private static final Logger LOG = LoggerFactory.getLogger(ExecutorServicesImpl.class);
+    public static final String THREADS = "testeefi.weld.threads";
+
+    private final int threads;
+    private final ExecutorService executor;
+
+    /**
+     * Constructor.
+     *
+     * @param threads the number of threads of the pool.
+     */
+    public ExecutorServicesImpl(final int threads) {
+        this.threads = Math.max(1, threads);
+        this.executor = Executors.newFixedThreadPool(this.threads, new WorkerThreadFactory());
+        LOG.debug("Using {} threads for Weld", this.threads);
+    }
+
+    /**
+     * Creates the executor services as configured via the {@link TestEEfiConfiguration configuration}.
+     *
+     * @return the executor services.
+     */
+    public static ExecutorServicesImpl fromConfiguration() {
+        return new ExecutorServicesImpl(TestEEfiConfiguration.instance()
+                .getInt(THREADS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Override
+    public ExecutorService getTaskExecutor() {
+        return executor;
+    }
+
+    @Override
+    protected int getThreadPoolSize() {
+        return threads;
+    }
+
+    @Override
+    public void cleanup() {
+        // The pool is shared by all containers and shut down with the test runtime
+    }
+
+    /**
+     * Shuts down the thread pool.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread ret = new Thread(r, "testeefi-weld-" + count.getAndIncrement());
+            ret.setDaemon(true);
+            return ret;
+        }
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.services;
+
+import fi.testee.config.TestEEfiConfiguration;
+import org.jboss.weld.configuration.spi.ExternalConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Implementation of {@link ExternalConfiguration}, passing Weld configuration keys from the TestEE.fi
+ * configuration to Weld. Immutable and thus thread safe.
+ * <p>
+ * Every {@link TestEEfiConfiguration configuration} key starting with <code>org.jboss.weld.</code>, e.g.
+ * <code>org.jboss.weld.bootstrap.preloaderThreadPoolSize</code>, is passed as is. A single instance is shared by
+ * all Weld containers of the {@link fi.testee.runtime.TestRuntime test runtime}.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+public class ExternalConfigurationImpl implements ExternalConfiguration {
+    private static final Logger LOG = LoggerFactory.getLogger(ExternalConfigurationImpl.class);
+    public static final String PREFIX = "org.jboss.weld.";
+
+    private final Map<String, Object> properties;
+
+    /**
+     * Constructor.
+     *
+     * @param properties the Weld configuration properties.
+     */
+    public ExternalConfigurationImpl(final Map<String, ?> properties) {
+        this.properties = Collections.unmodifiableMap(new HashMap<>(properties));
+    }
+
+    /**
+     * Creates the external configuration as configured via the {@link TestEEfiConfiguration configuration}.
+     *
+     * @return the external configuration.
+     */
+    public static ExternalConfigurationImpl fromConfiguration() {
+        final Map<String, String> properties = TestEEfiConfiguration.instance().getAll(PREFIX);
+        if (!properties.isEmpty()) {
+            LOG.debug("Weld configuration: {}", properties);
+        }
+        return new ExternalConfigurationImpl(properties);
+    }
+
+    /**
+     * Checks if there is anything to configure.
+     *
+     * @return <code>true</code> if no Weld configuration properties are set.
+     */
+    public boolean isEmpty() {
+        return properties.isEmpty();
+    }
+
+    @Override
+    public Map<String, Object> getConfigurationProperties() {
+        return properties;
+    }
+
+    @Override
+    public void cleanup() {
+        // Shared by all containers
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import org.junit.Test;
+
+import javax.ejb.Singleton;
+import javax.ejb.Stateful;
+import javax.ejb.Stateless;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AnnotationScannerTest {
+    private static boolean initialized;
+
+    @Test
+    public void class_names_and_existence_do_not_load_classes() {
+        final AnnotationScanner scanner = new AnnotationScanner(() -> index(new AtomicInteger()));
+
+        assertEquals(singleton("does.not.Exist"), scanner.classNamesAnnotatedWith(Stateless.class));
+        assertEquals(
+                new HashSet<>(asList("does.not.Exist", Initializing.class.getName())),
+                scanner.classNamesAnnotatedWith(Stateless.class, Singleton.class)
+        );
+        assertTrue(scanner.anyAnnotatedWith(Stateful.class, Stateless.class));
+        assertFalse(scanner.anyAnnotatedWith(Stateful.class));
+    }
+
+    @Test
+    public void loads_classes_without_initializing_them() {
+        final AnnotationScanner scanner = new AnnotationScanner(() -> index(new AtomicInteger()));
+
+        assertEquals(singleton(Initializing.class), new HashSet<>(scanner.scanFor(Singleton.class)));
+        assertFalse(initialized);
+    }
+
+    @Test
+    public void builds_index_once() {
+        final AtomicInteger invocations = new AtomicInteger();
+        final AnnotationScanner scanner = new AnnotationScanner(() -> index(invocations));
+
+        scanner.scanFor(Singleton.class);
+        scanner.scanFor(Singleton.class);
+        scanner.anyAnnotatedWith(Stateless.class);
+
+        assertEquals(1, invocations.get());
+    }
+
+    private static Map<String, Set<String>> index(final AtomicInteger invocations) {
+        invocations.incrementAndGet();
+        final Map<String, Set<String>> ret = new HashMap<>();
+        ret.put(Stateless.class.getName(), singleton("does.not.Exist"));
+        ret.put(Singleton.class.getName(), singleton(Initializing.class.getName()));
+        return ret;
+    }
+
+    public static class Initializing {
+        static {
+            initialized = true;
+        }
+    }
+}
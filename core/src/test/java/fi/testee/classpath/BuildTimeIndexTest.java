@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import fi.testee.exceptions.TestEEfiException;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BuildTimeIndexTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void uses_index_instead_of_scanning() throws IOException {
+        // The class files are garbage, so they must not be parsed
+        final File root = archive("a/B.class", "a/B$1.class", "a/C.class");
+
+        final ArchiveSummary summary = new DirectoryJavaArchive(root).getSummary();
+
+        assertEquals(singleton("a.B"), summary.getAnnotationIndex().get("javax.ejb.Stateless"));
+        assertEquals(3, summary.getClasses().size());
+        assertTrue(summary.hasResource("META-INF/beans.xml"));
+    }
+
+    @Test(expected = TestEEfiException.class)
+    public void scans_when_classes_were_added() throws IOException {
+        new DirectoryJavaArchive(archive("a/B.class", "a/C.class", "a/D.class")).getSummary();
+    }
+
+    @Test(expected = TestEEfiException.class)
+    public void scans_when_classes_were_removed() throws IOException {
+        new DirectoryJavaArchive(archive("a/B.class")).getSummary();
+    }
+
+    @Test(expected = TestEEfiException.class)
+    public void scans_when_classes_are_newer_than_index() throws IOException {
+        final File root = archive("a/B.class", "a/C.class");
+        assertTrue(new File(root, BuildTimeIndex.RESOURCE).setLastModified(System.currentTimeMillis() - 3_600_000));
+
+        new DirectoryJavaArchive(root).getSummary();
+    }
+
+    private File archive(final String... classFiles) throws IOException {
+        final File root = tmp.newFolder();
+        FileUtils.writeLines(new File(root, BuildTimeIndex.RESOURCE), StandardCharsets.UTF_8.name(), asList(
+                "# testee.fi-index v1",
+                "a.B javax.ejb.Stateless javax.inject.Named",
+                "a.C"
+        ));
+        FileUtils.writeStringToFile(new File(root, "META-INF/beans.xml"), "<beans/>", StandardCharsets.UTF_8);
+        for (final String classFile : classFiles) {
+            FileUtils.writeStringToFile(new File(root, classFile), "garbage", StandardCharsets.UTF_8);
+        }
+        return root;
+    }
+}
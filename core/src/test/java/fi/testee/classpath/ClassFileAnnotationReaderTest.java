@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import fi.testee.exceptions.TestEEfiException;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import javax.annotation.Resource;
+import javax.ejb.Stateless;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.lang.model.element.NestingKind;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClassFileAnnotationReaderTest {
+    @Test
+    public void reads_class_member_and_parameter_annotations() throws IOException {
+        final Set<String> annotations = new HashSet<>();
+
+        final String className = ClassFileAnnotationReader.read(classFile(Annotated.class), annotations);
+
+        assertEquals(Annotated.class.getName(), className);
+        assertEquals(new HashSet<>(asList(
+                Stateless.class.getName(),
+                Inject.class.getName(),
+                Resource.class.getName(),
+                Named.class.getName()
+        )), annotations);
+    }
+
+    @Test(expected = TestEEfiException.class)
+    public void rejects_non_class_files() {
+        ClassFileAnnotationReader.read(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}), new HashSet<>());
+    }
+
+    @Test(expected = TestEEfiException.class)
+    public void rejects_truncated_class_files() throws IOException {
+        final ByteBuffer classFile = classFile(Annotated.class);
+        classFile.limit(classFile.limit() / 2);
+        ClassFileAnnotationReader.read(classFile, new HashSet<>());
+    }
+
+    @Test
+    public void reads_header() throws IOException {
+        final ClassHeader header = ClassHeader.read(classFile(Annotated.class));
+
+        assertEquals(Annotated.class.getName(), header.getClassName());
+        assertEquals(Base.class.getName(), header.getSuperclassName());
+        assertEquals(singletonList(Serializable.class.getName()), header.getInterfaceNames());
+        assertEquals(Annotated.class.getModifiers(), header.getModifiers());
+        assertEquals(NestingKind.MEMBER, header.getNestingKind());
+        assertEquals(singleton(Stateless.class.getName()), header.getDeclaredAnnotations());
+        assertTrue(header.getAnnotations().containsAll(asList(Stateless.class.getName(), Named.class.getName())));
+        assertTrue(header.hasNoArgsConstructor());
+        assertTrue(header.getConstructorAnnotations().isEmpty());
+    }
+
+    @Test
+    public void reads_header_of_class_with_inject_constructor() throws IOException {
+        final ClassHeader header = ClassHeader.read(classFile(InjectConstructor.class));
+
+        assertFalse(header.hasNoArgsConstructor());
+        assertEquals(singleton(Inject.class.getName()), header.getConstructorAnnotations());
+        assertEquals(Object.class.getName(), header.getSuperclassName());
+        assertTrue(Modifier.isAbstract(header.getModifiers()));
+    }
+
+    @Test
+    public void reads_nesting_kind() throws IOException {
+        class Local {
+        }
+        final Object anonymous = new Object() {
+        };
+
+        assertEquals(NestingKind.TOP_LEVEL, ClassHeader.read(classFile(ClassFileAnnotationReaderTest.class)).getNestingKind());
+        assertEquals(NestingKind.LOCAL, ClassHeader.read(classFile(Local.class)).getNestingKind());
+        assertEquals(NestingKind.ANONYMOUS, ClassHeader.read(classFile(anonymous.getClass())).getNestingKind());
+    }
+
+    private static ByteBuffer classFile(final Class<?> clazz) throws IOException {
+        final String name = clazz.getName().replace('.', '/') + ".class";
+        try (final InputStream in = clazz.getClassLoader().getResourceAsStream(name)) {
+            return ByteBuffer.wrap(IOUtils.toByteArray(in));
+        }
+    }
+
+    @Retention(RetentionPolicy.CLASS)
+    private @interface Invisible {
+    }
+
+    public static class Base {
+    }
+
+    @Stateless
+    @Invisible
+    public static class Annotated extends Base implements Serializable {
+        private static final long LONG_CONSTANT = 42L;
+        private static final double DOUBLE_CONSTANT = 4.2;
+
+        @Inject
+        private Instance<Object> field;
+
+        @Resource(name = "someResource", type = Object.class, authenticationType = Resource.AuthenticationType.APPLICATION)
+        public void setSomething(@Named("param") final String param) {
+            final Runnable r = () -> System.out.println(param + LONG_CONSTANT + DOUBLE_CONSTANT);
+            r.run();
+        }
+    }
+
+    public abstract static class InjectConstructor {
+        @Inject
+        public InjectConstructor(final String param) {
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import fi.testee.utils.UrlUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClassLoaderAnalyzerTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void follows_cyclic_manifest_class_paths_once_in_order() throws IOException {
+        final File a = jar("a.jar", "b.jar c.jar");
+        final File b = jar("b.jar", "a.jar ./c.jar");
+        final File c = jar("c.jar", null);
+        final URL nonCanonical = UrlUtils.toUrl(new File(tmp.getRoot(), "sub/../a.jar"));
+        assertTrue(new File(tmp.getRoot(), "sub").mkdir());
+
+        final List<URL> classpath = ClassLoaderAnalyzer.getClasspath(
+                new URLClassLoader(new URL[]{UrlUtils.toUrl(a), nonCanonical}, null)
+        );
+
+        assertEquals(classpath.size(), new HashSet<>(classpath).size());
+        final int start = classpath.indexOf(UrlUtils.toUrl(a.getCanonicalFile()));
+        assertEquals(
+                Stream.of(a, b, c).map(ClassLoaderAnalyzerTest::canonicalUrl).collect(toList()),
+                classpath.subList(start, start + 3)
+        );
+    }
+
+    private static URL canonicalUrl(final File file) {
+        try {
+            return UrlUtils.toUrl(file.getCanonicalFile());
+        } catch (final IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private File jar(final String name, final String classPath) throws IOException {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (classPath != null) {
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+        }
+        final File ret = new File(tmp.getRoot(), name);
+        new JarOutputStream(new FileOutputStream(ret), manifest).close();
+        return ret;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ClassNameSetTest {
+    private static final List<String> CLASSES = asList(
+            "com.acme.Foo",
+            "com.acme.Foo$Bar",
+            "com.acme.sub.Foo",
+            "com.acme.Baz",
+            "com.acme.Foo",
+            "org.example.A",
+            "Unpackaged"
+    );
+
+    @Test
+    public void contains_all_class_names() {
+        final ClassNameSet set = ClassNameSet.of(CLASSES);
+
+        assertEquals(new HashSet<>(CLASSES), set);
+        assertEquals(6, set.size());
+        CLASSES.forEach(it -> assertTrue(it, set.contains(it)));
+    }
+
+    @Test
+    public void does_not_contain_other_names() {
+        final ClassNameSet set = ClassNameSet.of(CLASSES);
+
+        Arrays.asList("com.acme.Fo", "com.acme.Foo2", "com.acme.sub.Baz", "com.Foo", "Foo", "", "org.example.A$1")
+                .forEach(it -> assertFalse(it, set.contains(it)));
+        assertFalse(set.contains(42));
+    }
+
+    @Test
+    public void iterates_over_all_class_names() {
+        final Collection<String> iterated = new ArrayList<>(ClassNameSet.of(CLASSES));
+
+        assertEquals(6, iterated.size());
+        assertEquals(new HashSet<>(CLASSES), new HashSet<>(iterated));
+    }
+
+    @Test
+    public void empty() {
+        final ClassNameSet set = ClassNameSet.of(emptySet());
+
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains("com.acme.Foo"));
+        assertFalse(set.iterator().hasNext());
+    }
+
+    @Test
+    public void reuses_compact_sets() {
+        final ClassNameSet set = ClassNameSet.of(CLASSES);
+
+        assertSame(set, ClassNameSet.of(set));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void is_read_only() {
+        ClassNameSet.of(CLASSES).add("com.acme.Other");
+    }
+}
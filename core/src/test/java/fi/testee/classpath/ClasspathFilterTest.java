@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClasspathFilterTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void skips_known_irrelevant_jars() throws IOException {
+        final ClasspathFilter filter = new ClasspathFilter(emptyList(), emptyList(), true);
+        final File logback = jar("logback-classic-1.1.7.jar");
+
+        assertFalse(filter.accept(logback));
+        assertTrue(filter.accept(jar("my-module-1.0.jar")));
+        assertEquals(1, filter.getSkippedArchives());
+        assertEquals(logback.length(), filter.getSkippedBytes());
+    }
+
+    @Test
+    public void known_irrelevant_jars_can_be_enabled() throws IOException {
+        assertTrue(new ClasspathFilter(emptyList(), emptyList(), false).accept(jar("logback-classic-1.1.7.jar")));
+        assertTrue(new ClasspathFilter(singletonList("logback-*.jar"), emptyList(), true).accept(jar("logback-classic-1.1.7.jar")));
+    }
+
+    @Test
+    public void includes_and_excludes() throws IOException {
+        final ClasspathFilter filter = new ClasspathFilter(
+                asList("my-*.jar", "regex:.*/build/classes/.*"),
+                singletonList("**/my-legacy-*.jar"),
+                true
+        );
+
+        assertTrue(filter.accept(jar("my-module-1.0.jar")));
+        assertTrue(filter.accept(tmp.newFolder("build", "classes", "main")));
+        assertFalse(filter.accept(jar("other-1.0.jar")));
+        assertFalse(filter.accept(jar("my-legacy-1.0.jar")));
+    }
+
+    @Test
+    public void never_skips_framework_archives() throws IOException {
+        final ClasspathFilter filter = new ClasspathFilter(singletonList("my-*.jar"), emptyList(), true);
+
+        assertTrue(filter.accept(jar("testeefi-core-0.7.0.jar", "META-INF/testee.fi")));
+        assertTrue(filter.accept(jar("h2-0.7.0.jar", "META-INF/testee.fi")));
+    }
+
+    @Test
+    public void never_skips_framework_archives_named_like_known_irrelevant_jars() throws IOException {
+        final ClasspathFilter filter = new ClasspathFilter(emptyList(), emptyList(), true);
+
+        // Like the TestEE.fi H2 module
+        assertTrue(filter.accept(jar("h2-0.7.0.jar", "META-INF/testee.fi")));
+        assertFalse(filter.accept(jar("h2-1.4.196.jar")));
+    }
+
+    private File jar(final String name, final String... entries) throws IOException {
+        final File ret = new File(tmp.getRoot(), name);
+        try (final JarOutputStream out = new JarOutputStream(new FileOutputStream(ret))) {
+            out.putNextEntry(new JarEntry("dummy.txt"));
+            out.write("dummy".getBytes(StandardCharsets.UTF_8));
+            for (final String entry : entries) {
+                out.putNextEntry(new JarEntry(entry));
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ClasspathIndexCacheTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void reuses_summary_for_unchanged_archive() throws IOException {
+        final File root = archive();
+        final ClasspathIndexCache cache = new ClasspathIndexCache(tmp.newFolder("cache"));
+        final AtomicInteger invocations = new AtomicInteger();
+
+        cache.get(root, () -> summary(invocations));
+        final ArchiveSummary cached = cache.get(root, () -> summary(invocations));
+
+        assertEquals(1, invocations.get());
+        assertEquals(new HashSet<>(asList("a.B", "a.C")), new HashSet<>(cached.getClasses()));
+        assertEquals(singleton("a.B"), cached.getAnnotationIndex().get("javax.ejb.Stateless"));
+        assertArrayEquals("<beans/>".getBytes(StandardCharsets.UTF_8), cached.getResource("META-INF/beans.xml").getBytes());
+        assertFalse(cached.hasResource("META-INF/testee.fi"));
+    }
+
+    @Test
+    public void rescans_changed_archive() throws IOException {
+        final File root = archive();
+        final ClasspathIndexCache cache = new ClasspathIndexCache(tmp.newFolder("cache"));
+        final AtomicInteger invocations = new AtomicInteger();
+
+        cache.get(root, () -> summary(invocations));
+        FileUtils.writeStringToFile(new File(root, "a/D.class"), "changed", StandardCharsets.UTF_8);
+        cache.get(root, () -> summary(invocations));
+
+        assertEquals(2, invocations.get());
+    }
+
+    @Test
+    public void disabled_cache_always_scans() throws IOException {
+        final File root = archive();
+        final ClasspathIndexCache cache = new ClasspathIndexCache(null);
+        final AtomicInteger invocations = new AtomicInteger();
+
+        cache.get(root, () -> summary(invocations));
+        cache.get(root, () -> summary(invocations));
+
+        assertEquals(2, invocations.get());
+    }
+
+    private File archive() throws IOException {
+        final File root = tmp.newFolder("archive");
+        FileUtils.writeStringToFile(new File(root, "META-INF/beans.xml"), "", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(root, "a/B.class"), "B", StandardCharsets.UTF_8);
+        return root;
+    }
+
+    private static ArchiveSummary summary(final AtomicInteger invocations) {
+        invocations.incrementAndGet();
+        final Map<String, Set<String>> annotations = new HashMap<>();
+        annotations.put("javax.ejb.Stateless", singleton("a.B"));
+        return new ArchiveSummary(
+                new HashSet<>(asList("a.B", "a.C")),
+                annotations,
+                singletonMap("META-INF/beans.xml", "<beans/>".getBytes(StandardCharsets.UTF_8))
+        );
+    }
+}
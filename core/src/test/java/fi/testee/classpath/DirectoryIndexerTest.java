@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DirectoryIndexerTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void indexes_regular_files_with_slashes() throws IOException {
+        final File root = tmp.newFolder();
+        write(root, "META-INF/beans.xml");
+        write(root, "a/b/C.class");
+        write(root, "D.class");
+        new File(root, "empty").mkdirs();
+
+        assertEquals(asList("D.class", "META-INF/beans.xml", "a/b/C.class"), DirectoryIndexer.index(root.toPath()));
+    }
+
+    @Test
+    public void parallel_walk_matches_sequential_walk() throws IOException {
+        final File root = tmp.newFolder();
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                write(root, "p" + i + "/q" + j + "/C" + i + j + ".class");
+            }
+            write(root, "p" + i + "/D" + i + ".class");
+        }
+
+        final List<String> sequential = DirectoryIndexer.index(root.toPath(), false);
+        final List<String> parallel = DirectoryIndexer.index(root.toPath(), true);
+
+        assertEquals(110, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void missing_directory_is_empty() {
+        final File root = new File(tmp.getRoot(), "missing");
+
+        assertTrue(DirectoryIndexer.index(root.toPath(), false).isEmpty());
+        assertTrue(DirectoryIndexer.index(root.toPath(), true).isEmpty());
+    }
+
+    private static void write(final File root, final String name) throws IOException {
+        FileUtils.writeStringToFile(new File(root, name), name, StandardCharsets.UTF_8);
+    }
+}
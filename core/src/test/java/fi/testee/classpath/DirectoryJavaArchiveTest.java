@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class DirectoryJavaArchiveTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void looks_up_resources_in_file_system() throws IOException {
+        final File root = tmp.newFolder();
+        write(root, "a/b/resource.txt", "content");
+        final DirectoryJavaArchive archive = new DirectoryJavaArchive(root);
+
+        assertArrayEquals(bytes("content"), archive.findResource("a/b/resource.txt").getBytes());
+    }
+
+    @Test
+    public void looks_up_resources_added_after_indexing() throws IOException {
+        final File root = tmp.newFolder();
+        write(root, "a/indexed.txt", "indexed");
+        final DirectoryJavaArchive archive = new DirectoryJavaArchive(root);
+        archive.getClasses();
+
+        write(root, "a/added.txt", "added");
+
+        assertArrayEquals(bytes("added"), archive.findResource("a/added.txt").getBytes());
+    }
+
+    @Test
+    public void missing_resources_and_directories_are_not_found() throws IOException {
+        final File root = tmp.newFolder();
+        write(root, "a/resource.txt", "content");
+        final DirectoryJavaArchive archive = new DirectoryJavaArchive(root);
+
+        assertNull(archive.findResource("a/missing.txt"));
+        assertNull(archive.findResource("a"));
+    }
+
+    private static void write(final File root, final String name, final String content) throws IOException {
+        FileUtils.writeStringToFile(new File(root, name), content, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(final String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.classpath;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class JarJavaArchiveTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void looks_up_entries() throws IOException {
+        final File jar = jar(tmp.newFile("test.jar"), "content");
+        final JarJavaArchive archive = new JarJavaArchive(jar);
+        try {
+            assertArrayEquals(bytes("content"), archive.findResource("a/b/resource.txt").getBytes());
+            assertNull(archive.findResource("a/b/missing.txt"));
+            assertNull(archive.findResource("a/b/"));
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void close_releases_file() throws IOException {
+        final File jar = jar(tmp.newFile("test.jar"), "old");
+        final JarJavaArchive archive = new JarJavaArchive(jar);
+        try {
+            assertArrayEquals(bytes("old"), archive.findResource("a/b/resource.txt").getBytes());
+
+            archive.close();
+            // Replacing the file, an archive still holding the old one would keep reading the old contents
+            final File replacement = jar(tmp.newFile("replacement.jar"), "new");
+            Files.move(replacement.toPath(), jar.toPath(), ATOMIC_MOVE);
+
+            assertArrayEquals(bytes("new"), archive.findResource("a/b/resource.txt").getBytes());
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void close_without_access_is_noop() throws IOException {
+        final JarJavaArchive archive = new JarJavaArchive(jar(tmp.newFile("test.jar"), "content"));
+
+        archive.close();
+        archive.close();
+    }
+
+    private static File jar(final File file, final String content) throws IOException {
+        try (final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("a/b/"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("a/b/resource.txt"));
+            out.write(bytes(content));
+            out.closeEntry();
+        }
+        return file;
+    }
+
+    private static byte[] bytes(final String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.config;
+
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestEEfiConfigurationTest {
+    @Test
+    public void system_properties_override_file() {
+        final Properties file = new Properties();
+        file.setProperty("a", "file");
+        file.setProperty("b", "file");
+        final Properties system = new Properties();
+        system.setProperty("b", "system");
+
+        final TestEEfiConfiguration config = new TestEEfiConfiguration(file, system);
+
+        assertEquals("file", config.get("a"));
+        assertEquals("system", config.get("b"));
+        assertNull(config.get("c"));
+        assertEquals("default", config.get("c", "default"));
+    }
+
+    @Test
+    public void typed_values() {
+        final Properties file = new Properties();
+        file.setProperty("int", " 42 ");
+        file.setProperty("bool", "true");
+        file.setProperty("list", "a, b,,c ");
+
+        final TestEEfiConfiguration config = new TestEEfiConfiguration(file, new Properties());
+
+        assertEquals(42, config.getInt("int", 0));
+        assertEquals(7, config.getInt("missing", 7));
+        assertTrue(config.getBoolean("bool", false));
+        assertEquals(asList("a", "b", "c"), config.getList("list"));
+    }
+
+    @Test
+    public void values_by_prefix() {
+        final Properties file = new Properties();
+        file.setProperty("prefix.a", "file ");
+        file.setProperty("prefix.b", "file");
+        file.setProperty("other", "file");
+        final Properties system = new Properties();
+        system.setProperty("prefix.b", "system");
+        system.setProperty("prefix.c", "system");
+        system.setProperty("other.prefix", "system");
+
+        final TestEEfiConfiguration config = new TestEEfiConfiguration(file, system);
+
+        final TreeMap<String, String> expected = new TreeMap<>();
+        expected.put("prefix.a", "file");
+        expected.put("prefix.b", "system");
+        expected.put("prefix.c", "system");
+        assertEquals(expected, config.getAll("prefix."));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import fi.testee.classpath.DirectoryJavaArchive;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.enterprise.context.Dependent;
+import javax.enterprise.context.RequestScoped;
+import javax.enterprise.inject.Produces;
+import javax.enterprise.inject.Stereotype;
+import javax.enterprise.inject.Vetoed;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static org.junit.Assert.assertEquals;
+
+public class BeanArchiveTest {
+    private static final Class<?>[] CLASSES = {
+            ScopedBean.class,
+            StereotypedBean.class,
+            ProducerOnly.class,
+            PlainBean.class
+    };
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void deploys_all_classes_in_mode_all() throws IOException {
+        final BeanArchive archive = archive(beansXml("all", ""));
+
+        assertEquals(names(CLASSES), archive.getDeployedBeanClasses());
+    }
+
+    @Test
+    public void deploys_all_classes_with_empty_beans_xml() throws IOException {
+        final BeanArchive archive = archive("");
+
+        assertEquals(names(CLASSES), archive.getDeployedBeanClasses());
+    }
+
+    @Test
+    public void deploys_classes_with_class_level_bean_defining_annotations_in_mode_annotated() throws IOException {
+        final BeanArchive archive = archive(beansXml("annotated", ""));
+
+        // The producer method of ProducerOnly is annotated with a scope, which doesn't make the class a bean
+        assertEquals(names(ScopedBean.class, StereotypedBean.class), archive.getAnnotatedBeanClasses());
+        assertEquals(names(ScopedBean.class, StereotypedBean.class), archive.getDeployedBeanClasses());
+    }
+
+    @Test
+    public void deploys_nothing_in_mode_none() throws IOException {
+        final BeanArchive archive = archive(beansXml("none", ""));
+
+        assertEquals(emptySet(), archive.getDeployedBeanClasses());
+    }
+
+    @Test
+    public void honors_scan_excludes() throws IOException {
+        final BeanArchive archive = archive(beansXml("all", "<exclude name=\"" + PlainBean.class.getName() + "\"/>"));
+
+        final Collection<String> expected = names(CLASSES);
+        expected.remove(PlainBean.class.getName());
+        assertEquals(expected, archive.getDeployedBeanClasses());
+    }
+
+    @Test
+    public void honors_scan_excludes_in_mode_annotated() throws IOException {
+        final BeanArchive archive = archive(beansXml(
+                "annotated",
+                "<exclude name=\"" + ScopedBean.class.getName() + "\"/>"
+        ));
+
+        assertEquals(names(StereotypedBean.class), archive.getDeployedBeanClasses());
+    }
+
+    static String beansXml(final String mode, final String excludes) {
+        return "<beans xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\" version=\"1.1\""
+                + " bean-discovery-mode=\"" + mode + "\">"
+                + "<scan>" + excludes + "</scan>"
+                + "</beans>";
+    }
+
+    private BeanArchive archive(final String beansXml) throws IOException {
+        final File root = tmp.newFolder();
+        FileUtils.writeStringToFile(new File(root, "META-INF/beans.xml"), beansXml, StandardCharsets.UTF_8);
+        for (final Class<?> clazz : CLASSES) {
+            final String name = clazz.getName().replace('.', '/') + ".class";
+            try (final InputStream in = BeanArchiveTest.class.getClassLoader().getResourceAsStream(name)) {
+                FileUtils.writeByteArrayToFile(new File(root, name), IOUtils.toByteArray(in));
+            }
+        }
+        return new BeanArchive(new DirectoryJavaArchive(root), emptyList());
+    }
+
+    private static Collection<String> names(final Class<?>... classes) {
+        final Collection<String> ret = new HashSet<>();
+        asList(classes).forEach(it -> ret.add(it.getName()));
+        return ret;
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Stereotype
+    @RequestScoped
+    public @interface MyStereotype {
+    }
+
+    @Dependent
+    public static class ScopedBean {
+    }
+
+    @MyStereotype
+    public static class StereotypedBean {
+    }
+
+    // Vetoed, as the test classes are deployed by the other tests and a normal scoped String can't be proxied
+    @Vetoed
+    public static class ProducerOnly {
+        @Produces
+        @RequestScoped
+        public String produce() {
+            return "produced";
+        }
+    }
+
+    public static class PlainBean {
+    }
+}
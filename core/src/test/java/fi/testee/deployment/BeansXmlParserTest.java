@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import fi.testee.exceptions.TestEEfiException;
+import org.jboss.weld.bootstrap.spi.BeanDiscoveryMode;
+import org.jboss.weld.bootstrap.spi.BeansXml;
+import org.jboss.weld.bootstrap.spi.Filter;
+import org.jboss.weld.bootstrap.spi.Metadata;
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static fi.testee.deployment.BeanArchiveTest.beansXml;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class BeansXmlParserTest {
+    @Test
+    public void empty_file_is_a_marker() throws MalformedURLException {
+        assertSame(BeansXml.EMPTY_BEANS_XML, BeansXmlParser.parse(archive(), new byte[0]));
+    }
+
+    @Test
+    public void parses_discovery_mode() throws MalformedURLException {
+        assertEquals(BeanDiscoveryMode.ALL, parse(beansXml("all", "")).getBeanDiscoveryMode());
+        assertEquals(BeanDiscoveryMode.ANNOTATED, parse(beansXml("annotated", "")).getBeanDiscoveryMode());
+        assertEquals(BeanDiscoveryMode.NONE, parse(beansXml("none", "")).getBeanDiscoveryMode());
+    }
+
+    @Test
+    public void parses_excludes() throws MalformedURLException {
+        final BeansXml beansXml = parse(beansXml("all", "<exclude name=\"com.example.Excluded\"/>"));
+
+        assertEquals(
+                singletonList("com.example.Excluded"),
+                beansXml.getScanning().getExcludes().stream()
+                        .map(Metadata::getValue)
+                        .map(Filter::getName)
+                        .collect(toList())
+        );
+    }
+
+    @Test
+    public void parses_repeatedly_with_the_compiled_schema() throws MalformedURLException {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(BeanDiscoveryMode.ANNOTATED, parse(beansXml("annotated", "")).getBeanDiscoveryMode());
+        }
+    }
+
+    @Test(expected = TestEEfiException.class)
+    public void rejects_malformed_xml() throws MalformedURLException {
+        parse("<beans xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\">");
+    }
+
+    private static BeansXml parse(final String beansXml) throws MalformedURLException {
+        return BeansXmlParser.parse(archive(), beansXml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static URL archive() throws MalformedURLException {
+        return new URL("file:/archive/");
+    }
+}
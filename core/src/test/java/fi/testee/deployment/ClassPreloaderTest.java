@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class ClassPreloaderTest {
+    @After
+    public void reset() {
+        System.clearProperty(ClassPreloader.MAX_CLASSES);
+    }
+
+    @Test
+    public void stops_collecting_at_limit() {
+        final BeanArchive first = archive(false, "a.A", "a.B");
+        final BeanArchive second = archive(false, "b.A", "b.B");
+        final BeanArchive third = archive(false, "c.A");
+
+        assertEquals(
+                asList("a.A", "a.B", "b.A"),
+                asList(ClassPreloader.classNames(asList(first, second, third), 3).toArray())
+        );
+        verify(third, never()).getDeployedBeanClasses();
+    }
+
+    @Test
+    public void collects_all_classes_below_limit() {
+        final BeanArchive first = archive(false, "a.A");
+        final BeanArchive second = archive(false, "b.A");
+
+        assertEquals(
+                asList("a.A", "b.A"),
+                asList(ClassPreloader.classNames(asList(first, second), 10).toArray())
+        );
+    }
+
+    @Test
+    public void collects_framework_classes_first() {
+        final BeanArchive application = archive(false, "app.A");
+        final BeanArchive framework = archive(true, "fw.A");
+
+        assertEquals(
+                asList("fw.A"),
+                asList(ClassPreloader.classNames(asList(application, framework), 1).toArray())
+        );
+        verify(application, never()).getDeployedBeanClasses();
+    }
+
+    @Test
+    public void is_disabled_by_default() {
+        final BeanArchive archive = archive(false, "a.A");
+
+        ClassPreloader.preload(asList(archive));
+
+        verifyZeroInteractions(archive);
+    }
+
+    @Test
+    public void is_disabled_by_zero_limit() {
+        System.setProperty(ClassPreloader.MAX_CLASSES, "0");
+        final BeanArchive archive = archive(false, "a.A");
+
+        ClassPreloader.preload(asList(archive));
+
+        verifyZeroInteractions(archive);
+    }
+
+    private static BeanArchive archive(final boolean framework, final String... classes) {
+        final BeanArchive ret = mock(BeanArchive.class);
+        when(ret.isFrameworkRelevant()).thenReturn(framework);
+        when(ret.getDeployedBeanClasses()).thenReturn(asList(classes));
+        return ret;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import org.jboss.weld.bootstrap.api.Environments;
+import org.jboss.weld.bootstrap.spi.BeanDeploymentArchive;
+import org.jboss.weld.bootstrap.spi.Deployment;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DeploymentFingerprintTest {
+    @Test
+    public void ignores_order_of_bean_classes() {
+        final String fingerprint = fingerprint(new LinkedHashSet<>(asList("a.B", "a.C", "a.D")));
+
+        assertEquals(fingerprint, fingerprint(new LinkedHashSet<>(asList("a.D", "a.B", "a.C"))));
+    }
+
+    @Test
+    public void distinguishes_bean_classes_with_equal_hash_codes() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+
+        assertNotEquals(fingerprint(asList("a.Aa", "a.C")), fingerprint(asList("a.BB", "a.C")));
+    }
+
+    @Test
+    public void distinguishes_concatenated_bean_classes() {
+        assertNotEquals(fingerprint(asList("a.B", "a.C")), fingerprint(asList("a.Ba.C")));
+    }
+
+    @Test
+    public void distinguishes_environments() {
+        final Deployment deployment = deployment(asList("a.B", "a.C"));
+
+        assertNotEquals(
+                DeploymentFingerprint.of(deployment, Environments.SE),
+                DeploymentFingerprint.of(deployment, Environments.EE_INJECT)
+        );
+    }
+
+    private static String fingerprint(final Collection<String> beanClasses) {
+        return DeploymentFingerprint.of(deployment(beanClasses), Environments.SE);
+    }
+
+    private static Deployment deployment(final Collection<String> beanClasses) {
+        final BeanDeploymentArchive archive = mock(BeanDeploymentArchive.class);
+        when(archive.getId()).thenReturn("archive");
+        when(archive.getBeanClasses()).thenReturn(beanClasses);
+        when(archive.getEjbs()).thenReturn(new ArrayList<>());
+        final Deployment deployment = mock(Deployment.class);
+        when(deployment.getBeanDeploymentArchives()).thenReturn(Collections.singleton(archive));
+        when(deployment.getExtensions()).thenReturn(Collections.emptyList());
+        return deployment;
+    }
+}
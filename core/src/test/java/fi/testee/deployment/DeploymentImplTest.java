@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import fi.testee.spi.DynamicArchiveContributor;
+import org.jboss.weld.bootstrap.api.ServiceRegistry;
+import org.jboss.weld.bootstrap.spi.BeanDeploymentArchive;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.enterprise.inject.Vetoed;
+
+import java.util.Collection;
+import java.util.List;
+
+import static fi.testee.deployment.DeploymentImpl.UNMODIFIED;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DeploymentImplTest {
+    private final ServiceRegistry serviceRegistry = mock(ServiceRegistry.class);
+    private BeanArchiveDiscovery discovery;
+    private BeanArchive deployed;
+    private BeanArchive notDeployed;
+    private Collection<String> deployedClasses;
+    private Collection<String> dynamicClasses;
+    private BeanDeploymentArchive dynamic;
+
+    @Before
+    public void setup() {
+        discovery = mock(BeanArchiveDiscovery.class);
+        deployed = mock(BeanArchive.class);
+        notDeployed = mock(BeanArchive.class);
+        deployedClasses = singleton(Indexed.class.getName());
+        dynamicClasses = singleton(Dynamic.class.getName());
+        dynamic = mock(BeanDeploymentArchive.class);
+        when(dynamic.getBeanClasses()).thenReturn(dynamicClasses);
+        when(dynamic.getBeanDeploymentArchives()).thenReturn(emptyList());
+    }
+
+    @Test
+    public void loads_class_from_indexed_archive() {
+        when(discovery.findBeanArchives(Indexed.class.getName())).thenReturn(asList(deployed));
+
+        final BeanDeploymentArchive archive = deployment().loadBeanDeploymentArchive(Indexed.class);
+
+        assertSame(deployedClasses, archive.getBeanClasses());
+    }
+
+    @Test
+    public void loads_class_from_shadowed_archive() {
+        // The first archive on the classpath containing the class is not part of the deployment
+        when(discovery.findBeanArchives(Indexed.class.getName())).thenReturn(asList(notDeployed, deployed));
+
+        final BeanDeploymentArchive archive = deployment().loadBeanDeploymentArchive(Indexed.class);
+
+        assertSame(deployedClasses, archive.getBeanClasses());
+    }
+
+    @Test
+    public void loads_class_from_dynamic_archive() {
+        when(discovery.findBeanArchives(Dynamic.class.getName())).thenReturn(emptyList());
+
+        final BeanDeploymentArchive archive = deployment().loadBeanDeploymentArchive(Dynamic.class);
+
+        assertSame(dynamicClasses, archive.getBeanClasses());
+    }
+
+    @Test
+    public void does_not_load_unknown_class() {
+        when(discovery.findBeanArchives(Unknown.class.getName())).thenReturn(asList(notDeployed));
+
+        assertNull(deployment().loadBeanDeploymentArchive(Unknown.class));
+    }
+
+    private DeploymentImpl deployment() {
+        final DynamicArchiveContributor indexed = (registry, archives) -> singleton(new BeanDeploymentArchiveImpl(
+                registry,
+                deployed,
+                discovery,
+                archives,
+                deployedClasses,
+                emptySet()
+        ));
+        final DynamicArchiveContributor dynamicContributor = (registry, archives) -> singleton(dynamic);
+        final List<DynamicArchiveContributor> contributors = asList(indexed, dynamicContributor);
+        return new DeploymentImpl(contributors, serviceRegistry, emptySet(), UNMODIFIED);
+    }
+
+    @Vetoed
+    private static class Indexed {
+    }
+
+    @Vetoed
+    private static class Dynamic {
+    }
+
+    @Vetoed
+    private static class Unknown {
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import fi.testee.classpath.DirectoryJavaArchive;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Instance;
+import javax.enterprise.inject.Vetoed;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.inject.Inject;
+import javax.interceptor.Interceptor;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static fi.testee.deployment.BeanArchiveTest.beansXml;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReachableBeansTest {
+    // The fixtures are vetoed, as the test classes are deployed by the other tests
+    private static final Class<?>[] CLASSES = {
+            TestClass.class,
+            Service.class,
+            Dependency.class,
+            LazyDependency.class,
+            ResourceLikeBean.class,
+            Unreachable.class,
+            ReachableEjb.class,
+            UnreachableEjb.class,
+            AuditInterceptor.class,
+            InterceptorDependency.class,
+            EventObserver.class,
+            ObserverDependency.class,
+            PluginResource.class,
+            MetaPluginResource.class,
+            ObjectInjecting.class,
+            BeanManagerInjecting.class
+    };
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private BeanArchiveDiscovery beanArchiveDiscovery;
+    private BeanArchive archive;
+
+    @Before
+    public void setup() throws IOException {
+        archive = archive();
+        beanArchiveDiscovery = mock(BeanArchiveDiscovery.class);
+        when(beanArchiveDiscovery.getBeanArchives()).thenReturn(singletonList(archive));
+    }
+
+    @Test
+    public void reaches_injected_beans_and_roots() {
+        final Set<String> reachable = reachableBeans().from(TestClass.class);
+
+        assertEquals(
+                names(
+                        TestClass.class,
+                        Service.class,
+                        Dependency.class,
+                        LazyDependency.class,
+                        ReachableEjb.class,
+                        AuditInterceptor.class,
+                        InterceptorDependency.class,
+                        EventObserver.class,
+                        ObserverDependency.class,
+                        PluginResource.class,
+                        MetaPluginResource.class
+                ),
+                reachable
+        );
+    }
+
+    @Test
+    public void resource_injections_dont_reach_beans() {
+        final Set<String> reachable = reachableBeans().from(TestClass.class);
+
+        assertFalse(reachable.contains(ResourceLikeBean.class.getName()));
+    }
+
+    @Test
+    public void is_inconclusive_for_object_injection() {
+        final ReachableBeans reachableBeans = reachableBeans();
+
+        assertNull(reachableBeans.from(ObjectInjecting.class));
+        assertNotNull(reachableBeans.getInconclusiveReason());
+    }
+
+    @Test
+    public void is_inconclusive_for_bean_manager_injection() {
+        final ReachableBeans reachableBeans = reachableBeans();
+
+        assertNull(reachableBeans.from(BeanManagerInjecting.class));
+        assertNotNull(reachableBeans.getInconclusiveReason());
+    }
+
+    @Test
+    public void inconclusive_pruning_deploys_everything() {
+        final ContainerTemplate template = new ContainerTemplate(beanArchiveDiscovery, it -> true);
+
+        assertSame(template, template.prunedTo(ObjectInjecting.class));
+    }
+
+    @Test
+    public void pruning_retains_reachable_ejbs_only() {
+        final ContainerTemplate template = new ContainerTemplate(beanArchiveDiscovery, it -> true);
+
+        final ContainerTemplate pruned = template.prunedTo(TestClass.class);
+
+        assertEquals(names(ReachableEjb.class, UnreachableEjb.class), ejbs(template));
+        assertEquals(names(ReachableEjb.class), ejbs(pruned));
+        assertTrue(pruned.deploys(ReachableEjb.class.getName()));
+        assertFalse(pruned.deploys(UnreachableEjb.class.getName()));
+    }
+
+    @Test
+    public void pruned_template_knows_unpruned_template() {
+        final ContainerTemplate template = new ContainerTemplate(beanArchiveDiscovery, it -> true);
+
+        final ContainerTemplate pruned = template.prunedTo(TestClass.class);
+
+        assertSame(template, template.getUnpruned());
+        assertSame(template, pruned.getUnpruned());
+        assertFalse(pruned.deploys(Unreachable.class.getName()));
+        assertTrue(pruned.getUnpruned().deploys(Unreachable.class.getName()));
+    }
+
+    private ReachableBeans reachableBeans() {
+        final Map<BeanArchive, Collection<String>> candidates = new LinkedHashMap<>();
+        candidates.put(archive, archive.getDeployedBeanClasses());
+        return new ReachableBeans(beanArchiveDiscovery, candidates);
+    }
+
+    private static Set<String> ejbs(final ContainerTemplate template) {
+        return template.getEjbDescriptors().keySet().stream()
+                .map(it -> it.getBeanClass().getName())
+                .collect(toSet());
+    }
+
+    private BeanArchive archive() throws IOException {
+        final File root = tmp.newFolder();
+        FileUtils.writeStringToFile(new File(root, "META-INF/beans.xml"), beansXml("all", ""), StandardCharsets.UTF_8);
+        for (final Class<?> clazz : CLASSES) {
+            final String name = clazz.getName().replace('.', '/') + ".class";
+            try (final InputStream in = ReachableBeansTest.class.getClassLoader().getResourceAsStream(name)) {
+                FileUtils.writeByteArrayToFile(new File(root, name), IOUtils.toByteArray(in));
+            }
+        }
+        return new BeanArchive(new DirectoryJavaArchive(root), emptyList());
+    }
+
+    private static Set<String> names(final Class<?>... classes) {
+        final Set<String> ret = new HashSet<>();
+        asList(classes).forEach(it -> ret.add(it.getName()));
+        return ret;
+    }
+
+    /**
+     * Contributed as pruning root by {@link TestPruningRootExtension}.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface PluginCreated {
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @PluginCreated
+    public @interface MetaPluginCreated {
+    }
+
+    @Vetoed
+    public static class TestClass {
+        @Inject
+        private Service service;
+        @Resource
+        private ResourceLikeBean resource;
+    }
+
+    @Vetoed
+    public static class Service {
+        @Inject
+        private Dependency dependency;
+        @Inject
+        private Instance<LazyDependency> lazyDependency;
+        @EJB
+        private ReachableEjb ejb;
+    }
+
+    @Vetoed
+    public static class Dependency {
+    }
+
+    @Vetoed
+    public static class LazyDependency {
+    }
+
+    @Vetoed
+    public static class ResourceLikeBean {
+    }
+
+    @Vetoed
+    public static class Unreachable {
+        @Inject
+        private UnreachableEjb ejb;
+    }
+
+    @Vetoed
+    @Stateless
+    public static class ReachableEjb {
+    }
+
+    @Vetoed
+    @Stateless
+    public static class UnreachableEjb {
+    }
+
+    @Vetoed
+    @Interceptor
+    public static class AuditInterceptor {
+        @Inject
+        private InterceptorDependency dependency;
+    }
+
+    @Vetoed
+    public static class InterceptorDependency {
+    }
+
+    @Vetoed
+    public static class EventObserver {
+        public void observe(@Observes final String event, final ObserverDependency dependency) {
+        }
+    }
+
+    @Vetoed
+    public static class ObserverDependency {
+    }
+
+    @Vetoed
+    @PluginCreated
+    public static class PluginResource {
+    }
+
+    @Vetoed
+    public static class MetaPluginResource {
+        @MetaPluginCreated
+        public void handle() {
+        }
+    }
+
+    @Vetoed
+    public static class ObjectInjecting {
+        @Inject
+        private Object object;
+    }
+
+    @Vetoed
+    public static class BeanManagerInjecting {
+        @Inject
+        private BeanManager beanManager;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static fi.testee.deployment.BeanArchiveTest.beansXml;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanExcludesTest {
+    private static final String PROPERTY = "testeefi.test.scanExcludes";
+
+    @After
+    public void clearProperty() {
+        System.clearProperty(PROPERTY);
+    }
+
+    @Test
+    public void no_excludes() throws MalformedURLException {
+        final ScanExcludes excludes = excludes("");
+
+        assertTrue(excludes.isEmpty());
+        assertFalse(excludes.test("a.b.C"));
+    }
+
+    @Test
+    public void excludes_class() throws MalformedURLException {
+        final ScanExcludes excludes = excludes("<exclude name=\"a.b.C\"/>");
+
+        assertTrue(excludes.test("a.b.C"));
+        assertFalse(excludes.test("a.b.D"));
+        assertFalse(excludes.test("a.b.C$Nested"));
+    }
+
+    @Test
+    public void excludes_package() throws MalformedURLException {
+        final ScanExcludes excludes = excludes("<exclude name=\"a.b.*\"/>");
+
+        assertTrue(excludes.test("a.b.C"));
+        assertFalse(excludes.test("a.b.c.D"));
+        assertFalse(excludes.test("a.bc.D"));
+        assertFalse(excludes.test("a.C"));
+    }
+
+    @Test
+    public void excludes_package_and_subpackages() throws MalformedURLException {
+        final ScanExcludes excludes = excludes("<exclude name=\"a.b.**\"/>");
+
+        assertTrue(excludes.test("a.b.C"));
+        assertTrue(excludes.test("a.b.c.D"));
+        assertFalse(excludes.test("a.bc.D"));
+        assertFalse(excludes.test("a.C"));
+    }
+
+    @Test
+    public void excludes_if_class_available() throws MalformedURLException {
+        assertTrue(excludes(exclude("<if-class-available name=\"" + String.class.getName() + "\"/>"))
+                .test("a.b.C"));
+        assertFalse(excludes(exclude("<if-class-available name=\"a.b.DoesNotExist\"/>"))
+                .test("a.b.C"));
+    }
+
+    @Test
+    public void excludes_if_class_not_available() throws MalformedURLException {
+        assertTrue(excludes(exclude("<if-class-not-available name=\"a.b.DoesNotExist\"/>"))
+                .test("a.b.C"));
+        assertFalse(excludes(exclude("<if-class-not-available name=\"" + String.class.getName() + "\"/>"))
+                .test("a.b.C"));
+    }
+
+    @Test
+    public void excludes_if_system_property_set() throws MalformedURLException {
+        final String xml = exclude("<if-system-property name=\"" + PROPERTY + "\"/>");
+        assertFalse(excludes(xml).test("a.b.C"));
+
+        System.setProperty(PROPERTY, "any");
+
+        assertTrue(excludes(xml).test("a.b.C"));
+    }
+
+    @Test
+    public void excludes_if_system_property_has_value() throws MalformedURLException {
+        final String xml = exclude("<if-system-property name=\"" + PROPERTY + "\" value=\"yes\"/>");
+        System.setProperty(PROPERTY, "no");
+        assertFalse(excludes(xml).test("a.b.C"));
+
+        System.setProperty(PROPERTY, "yes");
+
+        assertTrue(excludes(xml).test("a.b.C"));
+    }
+
+    @Test
+    public void excludes_if_system_property_not_set() throws MalformedURLException {
+        final String xml = exclude("<if-system-property name=\"!" + PROPERTY + "\"/>");
+        assertTrue(excludes(xml).test("a.b.C"));
+
+        System.setProperty(PROPERTY, "any");
+
+        assertFalse(excludes(xml).test("a.b.C"));
+    }
+
+    @Test
+    public void requires_all_activations() throws MalformedURLException {
+        final String xml = exclude("<if-class-available name=\"" + String.class.getName() + "\"/>"
+                + "<if-system-property name=\"" + PROPERTY + "\"/>");
+        assertFalse(excludes(xml).test("a.b.C"));
+
+        System.setProperty(PROPERTY, "any");
+
+        assertTrue(excludes(xml).test("a.b.C"));
+    }
+
+    private static String exclude(final String activations) {
+        return "<exclude name=\"a.b.*\">" + activations + "</exclude>";
+    }
+
+    private static ScanExcludes excludes(final String excludes) throws MalformedURLException {
+        final byte[] xml = beansXml("all", excludes).getBytes(StandardCharsets.UTF_8);
+        return ScanExcludes.of(
+                BeansXmlParser.parse(new URL("file:/archive"), xml),
+                ScanExcludesTest.class.getClassLoader()
+        );
+    }
+}
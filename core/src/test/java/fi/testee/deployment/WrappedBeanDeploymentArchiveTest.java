@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.deployment;
+
+import fi.testee.spi.BeansXmlModifier;
+import org.jboss.weld.bootstrap.spi.BeanDeploymentArchive;
+import org.jboss.weld.bootstrap.spi.BeansXml;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WrappedBeanDeploymentArchiveTest {
+    @Test
+    public void second_wrap_reuses_modified_beans_xml() {
+        final BeansXml original = mock(BeansXml.class);
+        final BeansXml modified = mock(BeansXml.class);
+        final BeanDeploymentArchive delegate = mock(BeanDeploymentArchive.class);
+        when(delegate.getBeansXml()).thenReturn(original);
+        final AtomicInteger applied = new AtomicInteger();
+        final BeansXmlModifier modifier = beansXml -> {
+            applied.incrementAndGet();
+            assertSame(original, beansXml);
+            return modified;
+        };
+
+        final BeansXml first = new WrappedBeanDeploymentArchive(delegate, modifier, it -> it).getBeansXml();
+        final BeansXml second = new WrappedBeanDeploymentArchive(delegate, modifier, it -> it).getBeansXml();
+
+        assertSame(modified, first);
+        assertSame(modified, second);
+        assertEquals(1, applied.get());
+    }
+
+    @Test
+    public void different_modifiers_are_applied_separately() {
+        final BeansXml original = mock(BeansXml.class);
+        final BeanDeploymentArchive delegate = mock(BeanDeploymentArchive.class);
+        when(delegate.getBeansXml()).thenReturn(original);
+        final BeansXml modified1 = mock(BeansXml.class);
+        final BeansXml modified2 = mock(BeansXml.class);
+
+        assertSame(modified1, new WrappedBeanDeploymentArchive(delegate, it -> modified1, it -> it).getBeansXml());
+        assertSame(modified2, new WrappedBeanDeploymentArchive(delegate, it -> modified2, it -> it).getBeansXml());
+    }
+}
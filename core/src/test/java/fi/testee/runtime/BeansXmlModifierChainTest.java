@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.runtime;
+
+import fi.testee.spi.BeansXmlModifier;
+import org.jboss.weld.bootstrap.spi.BeansXml;
+import org.junit.Test;
+
+import javax.enterprise.inject.Vetoed;
+import java.util.ArrayList;
+import java.util.List;
+
+import static fi.testee.deployment.DeploymentImpl.UNMODIFIED;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+public class BeansXmlModifierChainTest {
+    private static final List<String> APPLIED = new ArrayList<>();
+
+    @Test
+    public void no_modifiers_is_unmodified() {
+        assertSame(UNMODIFIED, BeansXmlModifierChain.of(emptySet()));
+    }
+
+    @Test
+    public void same_types_share_chain() {
+        final BeansXmlModifier first = BeansXmlModifierChain.of(asList(new First(), new Second()));
+        final BeansXmlModifier second = BeansXmlModifierChain.of(asList(new Second(), new First()));
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void different_types_dont_share_chain() {
+        assertNotSame(
+                BeansXmlModifierChain.of(asList(new First(), new Second())),
+                BeansXmlModifierChain.of(asList(new First()))
+        );
+    }
+
+    @Test
+    public void applies_all_modifiers_in_order() {
+        APPLIED.clear();
+        final BeansXml beansXml = mock(BeansXml.class);
+
+        assertSame(beansXml, BeansXmlModifierChain.of(asList(new Second(), new First())).apply(beansXml));
+        assertEquals(asList("first", "second"), APPLIED);
+    }
+
+    @Vetoed
+    public static class First implements BeansXmlModifier {
+        @Override
+        public BeansXml apply(final BeansXml beansXml) {
+            APPLIED.add("first");
+            return beansXml;
+        }
+    }
+
+    @Vetoed
+    public static class Second implements BeansXmlModifier {
+        @Override
+        public BeansXml apply(final BeansXml beansXml) {
+            APPLIED.add("second");
+            return beansXml;
+        }
+    }
+}
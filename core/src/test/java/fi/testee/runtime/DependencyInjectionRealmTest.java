@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.runtime;
+
+import fi.testee.deployment.BeanArchive;
+import fi.testee.deployment.BeanDeployment;
+import fi.testee.exceptions.TestEEfiException;
+import fi.testee.services.TransactionServicesImpl;
+import fi.testee.spi.Releaser;
+import org.jboss.weld.bootstrap.api.ServiceRegistry;
+import org.jboss.weld.bootstrap.api.helpers.SimpleServiceRegistry;
+import org.jboss.weld.transaction.spi.TransactionServices;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.enterprise.inject.Vetoed;
+
+import static fi.testee.deployment.DeploymentImpl.UNMODIFIED;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
+import static org.jboss.weld.bootstrap.api.Environments.SE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DependencyInjectionRealmTest {
+    private final Releaser releaser = new Releaser();
+    private DependencyInjectionRealm realm;
+
+    @Before
+    public void bootstrap() {
+        final ServiceRegistry serviceRegistry = new SimpleServiceRegistry();
+        serviceRegistry.add(TransactionServices.class, new TransactionServicesImpl());
+        realm = new DependencyInjectionRealm().init(
+                serviceRegistry,
+                SE,
+                emptySet(),
+                UNMODIFIED,
+                singletonList(new BeanDeployment(
+                        TestRuntime.instance().getBeanArchiveDiscorvery(),
+                        BeanArchive::isFrameworkRelevant
+                ))
+        );
+    }
+
+    @After
+    public void shutdown() {
+        releaser.release();
+        realm.shutdown();
+    }
+
+    @Test
+    public void repeated_lookup_returns_cached_beans() {
+        assertFalse(realm.isCached(CachedBean.class));
+
+        assertNotNull(realm.getInstanceOf(CachedBean.class, releaser));
+
+        assertTrue(realm.isCached(CachedBean.class));
+        assertSame(realm.resolve(CachedBean.class), realm.resolve(CachedBean.class));
+        assertEquals(1, realm.resolve(CachedBean.class).size());
+    }
+
+    @Test
+    public void repeated_injection_uses_cached_class_bean() {
+        realm.inject(new CachedBean(), releaser);
+
+        assertSame(realm.classBean(CachedBean.class), realm.classBean(CachedBean.class));
+    }
+
+    @Test
+    public void failed_lookup_is_not_cached() {
+        assertTrue(realm.resolve(NoBean.class).isEmpty());
+        assertFalse(realm.isCached(NoBean.class));
+    }
+
+    @Test
+    public void failed_injection_is_not_cached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                realm.inject(new NoBean(), releaser);
+                fail("Injection into a vetoed class succeeded");
+            } catch (final TestEEfiException e) {
+                assertFalse(realm.isCached(NoBean.class));
+            }
+        }
+    }
+
+    public static class CachedBean {
+    }
+
+    @Vetoed
+    public static class NoBean {
+    }
+}
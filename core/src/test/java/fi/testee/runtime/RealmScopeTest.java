@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.runtime;
+
+import fi.testee.deployment.BeanArchive;
+import fi.testee.deployment.BeanDeployment;
+import fi.testee.services.TransactionServicesImpl;
+import fi.testee.spi.Releaser;
+import org.jboss.weld.bootstrap.api.ServiceRegistry;
+import org.jboss.weld.bootstrap.api.helpers.SimpleServiceRegistry;
+import org.jboss.weld.bootstrap.spi.Metadata;
+import org.jboss.weld.bootstrap.spi.helpers.MetadataImpl;
+import org.jboss.weld.injection.spi.ResourceInjectionServices;
+import org.jboss.weld.transaction.spi.TransactionServices;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ContextNotActiveException;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.Extension;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static fi.testee.deployment.DeploymentImpl.UNMODIFIED;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.jboss.weld.bootstrap.api.Environments.SE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class RealmScopeTest {
+    private static final List<Object> DESTROYED = new ArrayList<>();
+
+    private final Releaser releaser = new Releaser();
+    private DependencyInjectionRealm container;
+    private DependencyInjectionRealm setup;
+    private DependencyInjectionRealm instance;
+
+    @Before
+    public void bootstrap() {
+        DESTROYED.clear();
+        container = RealmScope.runtime().call(RealmScopeTest::sharedContainer);
+        setup = new DependencyInjectionRealm().attach(container, new SimpleServiceRegistry());
+        instance = new DependencyInjectionRealm().attach(container, new SimpleServiceRegistry());
+    }
+
+    @After
+    public void shutdown() {
+        releaser.release();
+        if (instance != null) {
+            instance.shutdown();
+        }
+        if (setup != null) {
+            setup.shutdown();
+        }
+        container.shutdown();
+    }
+
+    @Test
+    public void realms_have_distinct_singletons() {
+        final Holder setupHolder = setup.getInstanceOf(Holder.class, releaser);
+        final Holder otherSetupHolder = setup.getInstanceOf(Holder.class, releaser);
+        final Holder instanceHolder = instance.getInstanceOf(Holder.class, releaser);
+
+        assertSame(setupHolder.outer, otherSetupHolder.outer);
+        assertNotSame(setupHolder.outer, instanceHolder.outer);
+        assertNotSame(setupHolder.outer.inner, instanceHolder.outer.inner);
+    }
+
+    @Test
+    public void singletons_are_destroyed_with_their_realm_in_reverse_order() {
+        final Holder setupHolder = setup.getInstanceOf(Holder.class, releaser);
+        final Holder instanceHolder = instance.getInstanceOf(Holder.class, releaser);
+
+        instance.shutdown();
+        instance = null;
+
+        // The inner singleton is created first, while the outer one is being created
+        assertEquals(asList(instanceHolder.outer, instanceHolder.outer.inner), DESTROYED);
+
+        setup.shutdown();
+        setup = null;
+
+        assertEquals(
+                asList(instanceHolder.outer, instanceHolder.outer.inner, setupHolder.outer, setupHolder.outer.inner),
+                DESTROYED
+        );
+    }
+
+    @Test(expected = ContextNotActiveException.class)
+    public void context_is_not_active_without_bound_realm() {
+        final BeanManager beanManager = instance.getInstanceOf(BeanManager.class, releaser);
+
+        beanManager.getContext(RealmScoped.class);
+    }
+
+    private static DependencyInjectionRealm sharedContainer() {
+        final ServiceRegistry serviceRegistry = new SimpleServiceRegistry();
+        serviceRegistry.add(TransactionServices.class, new TransactionServicesImpl());
+        serviceRegistry.add(ResourceInjectionServices.class, new RealmScope.RealmResourceInjectionServices());
+        final Collection<Metadata<Extension>> extensions = singleton(
+                new MetadataImpl<Extension>(new RealmScope.Extension(), "test")
+        );
+        return new DependencyInjectionRealm().init(
+                serviceRegistry,
+                SE,
+                extensions,
+                UNMODIFIED,
+                singletonList(new BeanDeployment(
+                        TestRuntime.instance().getBeanArchiveDiscorvery(),
+                        BeanArchive::isFrameworkRelevant
+                ))
+        );
+    }
+
+    public static class Holder {
+        @Inject
+        private Outer outer;
+    }
+
+    @Singleton
+    public static class Outer {
+        @Inject
+        private Inner inner;
+
+        @PreDestroy
+        public void destroy() {
+            DESTROYED.add(this);
+        }
+    }
+
+    @Singleton
+    public static class Inner {
+        @PreDestroy
+        public void destroy() {
+            DESTROYED.add(this);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.runtime;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestRuntimeWarmUpTest {
+    private static final int THREADS = 4;
+
+    @After
+    public void reset() {
+        System.clearProperty(TestRuntime.WARM_UP);
+    }
+
+    @Test
+    public void warm_up_is_started_once_and_yields_single_runtime() throws Exception {
+        System.setProperty(TestRuntime.WARM_UP, "true");
+        final CountDownLatch go = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<TestRuntime>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    go.await();
+                    return TestRuntime.instance();
+                }));
+            }
+            // Only null if another test in this JVM warmed up the runtime before
+            final Thread warmUp = TestRuntime.startWarmUp();
+            go.countDown();
+
+            assertNull(TestRuntime.startWarmUp());
+            final Set<TestRuntime> runtimes = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (final Future<TestRuntime> future : futures) {
+                runtimes.add(future.get());
+            }
+            if (warmUp != null) {
+                warmUp.join();
+            }
+            runtimes.add(TestRuntime.instance());
+
+            assertEquals(1, runtimes.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void warm_up_is_disabled_by_default() {
+        assertNull(TestRuntime.startWarmUp());
+    }
+
+    @Test
+    public void warm_up_is_idempotent() throws InterruptedException {
+        System.setProperty(TestRuntime.WARM_UP, "true");
+
+        final Thread first = TestRuntime.startWarmUp();
+        if (first != null) {
+            first.join();
+        }
+
+        assertNull(TestRuntime.startWarmUp());
+        assertNull(TestRuntime.startWarmUp());
+        assertSame(TestRuntime.instance(), TestRuntime.instance());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.runtime;
+
+import fi.testee.jdbc.TestData;
+import fi.testee.spi.DataSourceMigrator;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestSetupPersistenceTest {
+    private static final List<Class<?>> MIGRATED = new ArrayList<>();
+    private static boolean testDataSetUp;
+
+    @Before
+    public void reset() {
+        MIGRATED.clear();
+        testDataSetUp = false;
+    }
+
+    @Test
+    public void skips_persistence_setup_without_migrations_and_test_data() {
+        final long before = RuntimeStatistics.instance().getTestSetupsWithoutPersistence();
+
+        init(WithoutPersistence.class);
+
+        assertEquals(before + 1, RuntimeStatistics.instance().getTestSetupsWithoutPersistence());
+        assertEquals(emptyList(), MIGRATED);
+    }
+
+    @Test
+    public void runs_applicable_migrators() {
+        final long before = RuntimeStatistics.instance().getTestSetupsWithoutPersistence();
+
+        init(WithMigrations.class);
+
+        assertEquals(before, RuntimeStatistics.instance().getTestSetupsWithoutPersistence());
+        assertEquals(singletonList(WithMigrations.class), MIGRATED);
+    }
+
+    @Test
+    public void sets_up_test_data() {
+        final long before = RuntimeStatistics.instance().getTestSetupsWithoutPersistence();
+
+        init(WithTestData.class);
+
+        assertEquals(before, RuntimeStatistics.instance().getTestSetupsWithoutPersistence());
+        assertTrue(testDataSetUp);
+        assertEquals(emptyList(), MIGRATED);
+    }
+
+    private static void init(final Class<?> setupClass) {
+        new TestSetup(setupClass, TestRuntime.instance()).init().shutdown();
+    }
+
+    /**
+     * Only applicable to {@link WithMigrations}, like a migrator finding migrations for that class only.
+     */
+    public static class RecordingMigrator implements DataSourceMigrator {
+        @Override
+        public void migrate(final Class<?> testSetupClass, final Function<String, DataSource> dataSourceProvider) {
+            MIGRATED.add(testSetupClass);
+        }
+
+        @Override
+        public boolean isApplicable(final Class<?> testSetupClass) {
+            return testSetupClass == WithMigrations.class;
+        }
+    }
+
+    public static class WithoutPersistence {
+    }
+
+    public static class WithMigrations {
+    }
+
+    public static class WithTestData {
+        @TestData
+        public static void setupTestData() {
+            testDataSetUp = true;
+        }
+    }
+}
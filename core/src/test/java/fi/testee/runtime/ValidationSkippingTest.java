@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.runtime;
+
+import fi.testee.deployment.BeanArchive;
+import fi.testee.deployment.BeanDeployment;
+import fi.testee.services.TransactionServicesImpl;
+import org.jboss.weld.bootstrap.api.ServiceRegistry;
+import org.jboss.weld.bootstrap.api.helpers.SimpleServiceRegistry;
+import org.jboss.weld.bootstrap.spi.Metadata;
+import org.jboss.weld.bootstrap.spi.helpers.MetadataImpl;
+import org.jboss.weld.transaction.spi.TransactionServices;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.spi.AfterBeanDiscovery;
+import javax.enterprise.inject.spi.AfterDeploymentValidation;
+import javax.enterprise.inject.spi.Extension;
+import java.util.Collection;
+
+import static fi.testee.deployment.DeploymentImpl.UNMODIFIED;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.jboss.weld.bootstrap.api.Environments.SE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ValidationSkippingTest {
+    @Before
+    public void validateOnce() {
+        System.setProperty(DependencyInjectionRealm.VALIDATION, "once");
+    }
+
+    @After
+    public void validateAlways() {
+        System.clearProperty(DependencyInjectionRealm.VALIDATION);
+    }
+
+    @Test
+    public void skipped_validation_fires_container_lifecycle_events() {
+        final LifecycleObserver validatedObserver = new LifecycleObserver();
+        final DependencyInjectionRealm validated = realm(validatedObserver);
+        final long skippedBefore = RuntimeStatistics.instance().getSkippedValidations();
+        final LifecycleObserver skippedObserver = new LifecycleObserver();
+        final DependencyInjectionRealm skipped = realm(skippedObserver);
+        try {
+            assertEquals(skippedBefore + 1, RuntimeStatistics.instance().getSkippedValidations());
+            assertTrue(validatedObserver.afterBeanDiscovery);
+            assertTrue(validatedObserver.afterDeploymentValidation);
+            assertTrue(skippedObserver.afterBeanDiscovery);
+            assertTrue(skippedObserver.afterDeploymentValidation);
+        } finally {
+            skipped.shutdown();
+            validated.shutdown();
+        }
+    }
+
+    private static DependencyInjectionRealm realm(final LifecycleObserver observer) {
+        final ServiceRegistry serviceRegistry = new SimpleServiceRegistry();
+        serviceRegistry.add(TransactionServices.class, new TransactionServicesImpl());
+        final Collection<Metadata<Extension>> extensions = singleton(new MetadataImpl<Extension>(observer, "test"));
+        return new DependencyInjectionRealm().init(
+                serviceRegistry,
+                SE,
+                extensions,
+                UNMODIFIED,
+                singletonList(new BeanDeployment(
+                        TestRuntime.instance().getBeanArchiveDiscorvery(),
+                        BeanArchive::isFrameworkRelevant
+                ))
+        );
+    }
+
+    public static class LifecycleObserver implements Extension {
+        private boolean afterBeanDiscovery;
+        private boolean afterDeploymentValidation;
+
+        void afterBeanDiscovery(@Observes final AfterBeanDiscovery event) {
+            afterBeanDiscovery = true;
+        }
+
+        void afterDeploymentValidation(@Observes final AfterDeploymentValidation event) {
+            afterDeploymentValidation = true;
+        }
+    }
+}
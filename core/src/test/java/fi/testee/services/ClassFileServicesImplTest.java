@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.services;
+
+import fi.testee.deployment.BeanArchiveDiscovery;
+import fi.testee.services.vetoed.VetoedPackageBean;
+import org.jboss.weld.resources.spi.ClassFileInfo;
+import org.jboss.weld.resources.spi.ClassFileInfo.NestingType;
+import org.jboss.weld.resources.spi.ClassFileInfoException;
+import org.junit.Test;
+
+import javax.enterprise.context.Dependent;
+import javax.enterprise.inject.Instance;
+import javax.enterprise.inject.Stereotype;
+import javax.enterprise.inject.Vetoed;
+import javax.inject.Inject;
+import java.io.Serializable;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ClassFileServicesImplTest {
+    // Class files not found in a bean archive are read via the class loader
+    private final ClassFileServicesImpl services = new ClassFileServicesImpl(mock(BeanArchiveDiscovery.class));
+
+    @Test
+    public void nesting_matches_reflection() {
+        final Object anonymous = new Serializable() {
+        };
+        class Local {
+        }
+
+        assertNesting(ClassFileServicesImplTest.class, NestingType.TOP_LEVEL);
+        assertNesting(StaticNested.class, NestingType.NESTED_MEMBER);
+        assertNesting(Inner.class, NestingType.NESTED_MEMBER);
+        assertNesting(anonymous.getClass(), NestingType.NESTED_ANONYMOUS);
+        assertNesting(Local.class, NestingType.NESTED_LOCAL);
+    }
+
+    @Test
+    public void modifiers_match_reflection() {
+        assertModifiers(ClassFileServicesImplTest.class);
+        assertModifiers(StaticNested.class);
+        assertModifiers(Inner.class);
+        assertModifiers(PrivateNested.class);
+        assertModifiers(AbstractNested.class);
+        assertModifiers(new Serializable() {
+        }.getClass());
+    }
+
+    @Test
+    public void type_hierarchy_matches_reflection() {
+        final ClassFileInfo info = info(Sub.class);
+
+        assertEquals(Sub.class.getSuperclass().getName(), info.getSuperclassName());
+        final Class<?>[] types = {Object.class, Base.class, Serializable.class, Sub.class, Runnable.class};
+        for (final Class<?> type : types) {
+            assertEquals(type.getName(), type.isAssignableFrom(Sub.class), info.isAssignableTo(type));
+            assertEquals(type.getName(), Sub.class.isAssignableFrom(type), info.isAssignableFrom(type));
+        }
+    }
+
+    @Test
+    public void meta_annotated_stereotypes_match_reflection() {
+        final ClassFileInfo info = info(StereotypedBean.class);
+
+        assertDeclared(StereotypedBean.class, MyStereotype.class, info);
+        assertDeclared(StereotypedBean.class, Dependent.class, info);
+        assertTrue(containsViaReflection(StereotypedBean.class, Stereotype.class));
+        assertTrue(info.containsAnnotation(Stereotype.class));
+        assertFalse(containsViaReflection(StereotypedBean.class, Vetoed.class));
+        assertFalse(info.containsAnnotation(Vetoed.class));
+    }
+
+    @Test
+    public void inherited_annotations_match_reflection() {
+        final ClassFileInfo info = info(Sub.class);
+
+        assertDeclared(Sub.class, MyInherited.class, info);
+        assertTrue(Sub.class.isAnnotationPresent(MyInherited.class));
+        assertTrue(info.containsAnnotation(MyInherited.class));
+        assertTrue(containsViaReflection(Sub.class, Inject.class));
+        assertTrue(info.containsAnnotation(Inject.class));
+    }
+
+    @Test
+    public void cdi_constructors_match_reflection() {
+        assertTrue(info(StaticNested.class).hasCdiConstructor());
+        assertTrue(info(InjectConstructor.class).hasCdiConstructor());
+        assertFalse(info(NoCdiConstructor.class).hasCdiConstructor());
+    }
+
+    @Test
+    public void vetoed_matches_reflection() {
+        assertVetoed(VetoedBean.class);
+        assertVetoed(VetoedPackageBean.class);
+        assertVetoed(StaticNested.class);
+    }
+
+    @Test(expected = ClassFileInfoException.class)
+    public void rejects_missing_classes() {
+        services.getClassFileInfo("fi.testee.services.DoesNotExist");
+    }
+
+    private ClassFileInfo info(final Class<?> clazz) {
+        return services.getClassFileInfo(clazz.getName());
+    }
+
+    private void assertNesting(final Class<?> clazz, final NestingType expected) {
+        final ClassFileInfo info = info(clazz);
+        assertEquals(expected, info.getNestingType());
+        assertEquals(clazz.getEnclosingClass() == null, info.isTopLevelClass());
+        assertEquals(clazz.isMemberClass(), info.getNestingType() == NestingType.NESTED_MEMBER);
+        assertEquals(clazz.isAnonymousClass(), info.getNestingType() == NestingType.NESTED_ANONYMOUS);
+        assertEquals(clazz.isLocalClass(), info.getNestingType() == NestingType.NESTED_LOCAL);
+    }
+
+    private void assertModifiers(final Class<?> clazz) {
+        assertEquals(clazz.getName(), clazz.getModifiers(), info(clazz).getModifiers());
+    }
+
+    private static void assertDeclared(
+            final Class<?> clazz,
+            final Class<? extends Annotation> annotationType,
+            final ClassFileInfo info
+    ) {
+        assertEquals(clazz.getDeclaredAnnotation(annotationType) != null, info.isAnnotationDeclared(annotationType));
+    }
+
+    private void assertVetoed(final Class<?> clazz) {
+        final boolean expected = clazz.isAnnotationPresent(Vetoed.class)
+                || clazz.getPackage().isAnnotationPresent(Vetoed.class);
+        assertEquals(clazz.getName(), expected, info(clazz).isVetoed());
+    }
+
+    private static boolean containsViaReflection(
+            final Class<?> clazz,
+            final Class<? extends Annotation> annotationType
+    ) {
+        for (Class<?> it = clazz; it != null && it != Object.class; it = it.getSuperclass()) {
+            for (final Annotation annotation : it.getDeclaredAnnotations()) {
+                if (annotation.annotationType() == annotationType
+                        || annotation.annotationType().isAnnotationPresent(annotationType)) {
+                    return true;
+                }
+            }
+            for (final Field field : it.getDeclaredFields()) {
+                if (field.isAnnotationPresent(annotationType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Inherited
+    public @interface MyInherited {
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Stereotype
+    @Dependent
+    public @interface MyStereotype {
+    }
+
+    @MyInherited
+    public static class Base implements Serializable {
+        @Inject
+        private Instance<Object> injected;
+    }
+
+    public static class Sub extends Base {
+    }
+
+    @MyStereotype
+    public static class StereotypedBean {
+    }
+
+    @Vetoed
+    public static class VetoedBean {
+    }
+
+    public static class StaticNested {
+    }
+
+    public class Inner {
+    }
+
+    private static class PrivateNested {
+    }
+
+    protected abstract static class AbstractNested {
+    }
+
+    public static class InjectConstructor {
+        @Inject
+        public InjectConstructor(final StaticNested value) {
+        }
+    }
+
+    public static class NoCdiConstructor {
+        public NoCdiConstructor(final String value) {
+        }
+    }
+}
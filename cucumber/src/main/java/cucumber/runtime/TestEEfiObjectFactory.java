@@ -33,6 +33,10 @@ import static java.util.UUID.randomUUID;
 public class TestEEfiObjectFactory implements ObjectFactory {
     private static final Logger LOG = LoggerFactory.getLogger(TestEEfiObjectFactory.class);
 
+    static {
+        TestRuntime.warmUp();
+    }
+
     private final TestSetup testSetup;
 
     private final Class<?> testSetupClass;
@@ -43,19 +47,27 @@ public class TestEEfiObjectFactory implements ObjectFactory {
     private Releaser releaser;
 
     public TestEEfiObjectFactory() {
-        final Collection<Class<?>> candidates = TestRuntime.instance()
+        final Collection<String> candidates = TestRuntime.instance()
                 .getBeanArchiveDiscorvery()
-                .getClassesWith(CucumberSetup.class);
+                .getClassNamesWith(CucumberSetup.class);
         if (candidates.isEmpty()) {
             throw new TestEEfiException("No class annotated with @CucumberSetup was found");
         }
         if (candidates.size() > 1) {
             throw new TestEEfiException("Multiple classes annotated with @CucumberSetup were found: " + candidates);
         }
-        testSetupClass = candidates.iterator().next();
+        testSetupClass = loadClass(candidates.iterator().next());
         testSetup = new TestSetup(testSetupClass, TestRuntime.instance()).init();
     }
 
+    private static Class<?> loadClass(final String className) {
+        try {
+            return Class.forName(className);
+        } catch (final ClassNotFoundException e) {
+            throw new TestEEfiException("Failed to load cucumber test setup class " + className, e);
+        }
+    }
+
     @Override
     public void start() {
         final String id = randomUUID().toString();
@@ -48,4 +48,9 @@ public class FlywayDataSourceMigrator implements DataSourceMigrator {
             flyway.migrate();
         }
     }
+
+    @Override
+    public boolean isApplicable(final Class<?> testSetupClass) {
+        return !AnnotationUtils.collectAnnotations(testSetupClass, fi.testee.flyway.annotation.Flyway.class).isEmpty();
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.flyway;
+
+import fi.testee.flyway.annotation.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FlywayDataSourceMigratorTest {
+    private final FlywayDataSourceMigrator migrator = new FlywayDataSourceMigrator();
+
+    @Test
+    public void is_not_applicable_without_migrations() {
+        assertFalse(migrator.isApplicable(WithoutMigrations.class));
+    }
+
+    @Test
+    public void is_applicable_with_migrations() {
+        assertTrue(migrator.isApplicable(WithMigrations.class));
+        assertTrue(migrator.isApplicable(InheritingMigrations.class));
+    }
+
+    @Test
+    public void skips_classes_without_migrations() {
+        migrator.migrate(WithoutMigrations.class, name -> {
+            fail("Requested data source " + name);
+            return null;
+        });
+    }
+
+    @Test
+    public void migrates_classes_with_migrations() throws SQLException {
+        final DataSource dataSource = dataSource();
+
+        migrator.migrate(WithMigrations.class, name -> {
+            assertEquals("testds", name);
+            return dataSource;
+        });
+
+        try (final Connection c = dataSource.getConnection(); final Statement statement = c.createStatement()) {
+            assertEquals(1, statement.executeUpdate("INSERT INTO person (id, name) VALUES (1, 'Alex')"));
+        }
+    }
+
+    private static DataSource dataSource() {
+        final JdbcDataSource ret = new JdbcDataSource();
+        ret.setURL("jdbc:h2:mem:" + FlywayDataSourceMigratorTest.class.getName() + ";DB_CLOSE_DELAY=-1");
+        return ret;
+    }
+
+    public static class WithoutMigrations {
+    }
+
+    @Flyway(dataSource = "testds", locations = "flyway-test")
+    public static class WithMigrations {
+    }
+
+    public static class InheritingMigrations extends WithMigrations {
+    }
+}
@@ -0,0 +1,4 @@
+CREATE TABLE person (
+  id   BIGINT PRIMARY KEY,
+  name VARCHAR(255)
+);
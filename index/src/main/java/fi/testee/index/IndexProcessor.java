@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor writing the names of all compiled classes together with the runtime visible
+ * annotations of the classes and their fields, methods and method parameters to
+ * <code>META-INF/testee.fi-index</code>. TestEE.fi uses this index instead of scanning the class files of
+ * the archive.
+ * <p>
+ * The index has one line per class: the binary class name, followed by the space separated names of the
+ * annotations. Anonymous and local classes are not visible to annotation processors and therefore not
+ * contained.</p>
+ *
+ * @author Alex Stockinger, IT-Stockinger
+ */
+@SupportedAnnotationTypes("*")
+public class IndexProcessor extends AbstractProcessor {
+    /**
+     * The location of the index in the class output.
+     */
+    public static final String INDEX_RESOURCE = "META-INF/testee.fi-index";
+    /**
+     * The first line of the index, identifying its format.
+     */
+    public static final String HEADER = "# testee.fi-index v1";
+
+    private final Map<String, Set<String>> index = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        roundEnv.getRootElements().stream()
+                .filter(it -> it instanceof TypeElement)
+                .forEach(it -> indexType((TypeElement) it));
+        if (roundEnv.processingOver()) {
+            write();
+        }
+        // Never claim annotations, other processors might be interested as well
+        return false;
+    }
+
+    private void indexType(final TypeElement type) {
+        final Set<String> annotations = new TreeSet<>();
+        collect(type, annotations);
+        for (final Element member : type.getEnclosedElements()) {
+            if (member instanceof TypeElement) {
+                indexType((TypeElement) member);
+            } else {
+                collect(member, annotations);
+                if (member instanceof ExecutableElement) {
+                    ((ExecutableElement) member).getParameters().forEach(it -> collect(it, annotations));
+                }
+            }
+        }
+        index.put(processingEnv.getElementUtils().getBinaryName(type).toString(), annotations);
+    }
+
+    private void collect(final Element element, final Collection<String> annotations) {
+        for (final AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            final TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+            final Retention retention = annotation.getAnnotation(Retention.class);
+            if (retention != null && retention.value() == RetentionPolicy.RUNTIME) {
+                annotations.add(processingEnv.getElementUtils().getBinaryName(annotation).toString());
+            }
+        }
+    }
+
+    private void write() {
+        try {
+            final FileObject file = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            try (final Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.write('\n');
+                for (final Map.Entry<String, Set<String>> entry : index.entrySet()) {
+                    writer.write(entry.getKey());
+                    for (final String annotation : entry.getValue()) {
+                        writer.write(' ');
+                        writer.write(annotation);
+                    }
+                    writer.write('\n');
+                }
+            }
+        } catch (final IOException e) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.WARNING,
+                    "Failed to write " + INDEX_RESOURCE + ": " + e.getMessage()
+            );
+        }
+    }
+}
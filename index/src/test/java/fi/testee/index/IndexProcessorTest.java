@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class IndexProcessorTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void writes_index() throws IOException {
+        final File source = new File(tmp.newFolder("a"), "B.java");
+        Files.write(source.toPath(), asList(
+                "package a;",
+                "import java.lang.annotation.*;",
+                "public class B {",
+                "    @Deprecated",
+                "    public void m(@Ann String x) {",
+                "        new Object() {};",
+                "    }",
+                "    @Retention(RetentionPolicy.RUNTIME)",
+                "    public @interface Ann {}",
+                "    @Retention(RetentionPolicy.CLASS)",
+                "    public @interface Invisible {}",
+                "    @Invisible",
+                "    public static class C {}",
+                "}"
+        ), StandardCharsets.UTF_8);
+        final File out = tmp.newFolder("out");
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+        final int result = compiler.run(null, null, null,
+                "-processor", IndexProcessor.class.getName(),
+                "-d", out.getAbsolutePath(),
+                source.getAbsolutePath()
+        );
+
+        assertEquals(0, result);
+        final List<String> index = Files.readAllLines(
+                new File(out, IndexProcessor.INDEX_RESOURCE).toPath(),
+                StandardCharsets.UTF_8
+        );
+        assertEquals(asList(
+                IndexProcessor.HEADER,
+                "a.B a.B$Ann java.lang.Deprecated",
+                "a.B$Ann java.lang.annotation.Retention",
+                "a.B$C",
+                "a.B$Invisible java.lang.annotation.Retention"
+        ), index);
+    }
+}
@@ -33,6 +33,10 @@ import java.util.Map;
  * @author Alex Stockinger, IT-Stockinger
  */
 public class TestEEfi extends BlockJUnit4ClassRunner {
+    static {
+        TestRuntime.warmUp();
+    }
+
     private final TestSetup testSetup;
     private final Map<FrameworkMethod, TestSetup.TestInstance> instances = new HashMap<>();
 
@@ -41,6 +41,10 @@ public class TestEEfi implements
         BeforeEachCallback {
     private static final ExtensionContext.Namespace NS = ExtensionContext.Namespace.create(randomUUID());
 
+    static {
+        TestRuntime.warmUp();
+    }
+
     @Override
     public void afterAll(final ExtensionContext context) throws Exception {
         final TestSetup testSetup = (TestSetup) context.getStore(NS).get(TestSetup.class);
@@ -43,6 +43,11 @@ public class LiquibaseDataSourceMigrator implements DataSourceMigrator {
         AnnotationUtils.collectAnnotations(testSetupClass, Liquibase.class).stream().forEach(it -> liquibase(it, dataSourceProvider));
     }
 
+    @Override
+    public boolean isApplicable(final Class<?> testSetupClass) {
+        return !AnnotationUtils.collectAnnotations(testSetupClass, Liquibase.class).isEmpty();
+    }
+
     private void liquibase(
             final Liquibase annotation,
             final Function<String, DataSource> dataSourceProvider
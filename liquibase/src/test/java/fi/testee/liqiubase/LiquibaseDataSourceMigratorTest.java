@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2017 Alex Stockinger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.testee.liqiubase;
+
+import fi.testee.liqiubase.annotations.Liquibase;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LiquibaseDataSourceMigratorTest {
+    private final LiquibaseDataSourceMigrator migrator = new LiquibaseDataSourceMigrator();
+
+    @Test
+    public void is_not_applicable_without_changelog() {
+        assertFalse(migrator.isApplicable(WithoutChangelog.class));
+    }
+
+    @Test
+    public void is_applicable_with_changelog() {
+        assertTrue(migrator.isApplicable(WithChangelog.class));
+        assertTrue(migrator.isApplicable(InheritingChangelog.class));
+    }
+
+    @Test
+    public void skips_classes_without_changelog() {
+        migrator.migrate(WithoutChangelog.class, name -> {
+            fail("Requested data source " + name);
+            return null;
+        });
+    }
+
+    @Test
+    public void applies_changelog() throws SQLException {
+        final DataSource dataSource = dataSource();
+
+        migrator.migrate(WithChangelog.class, name -> {
+            assertEquals("testds", name);
+            return dataSource;
+        });
+
+        try (final Connection c = dataSource.getConnection(); final Statement statement = c.createStatement()) {
+            assertEquals(1, statement.executeUpdate("INSERT INTO person (id, name) VALUES (1, 'Alex')"));
+        }
+    }
+
+    private static DataSource dataSource() {
+        final JdbcDataSource ret = new JdbcDataSource();
+        ret.setURL("jdbc:h2:mem:" + LiquibaseDataSourceMigratorTest.class.getName() + ";DB_CLOSE_DELAY=-1");
+        return ret;
+    }
+
+    public static class WithoutChangelog {
+    }
+
+    @Liquibase(dataSource = "testds", changeLogFile = "liquibase-test/changelog.xml")
+    public static class WithChangelog {
+    }
+
+    public static class InheritingChangelog extends WithChangelog {
+    }
+}